@@ -1,14 +1,43 @@
 package nz.ac.aut.hss;
 
+import nz.ac.aut.hss.cryptanalysis.Attack;
+import nz.ac.aut.hss.cryptanalysis.AttackProgress;
+import nz.ac.aut.hss.cryptanalysis.Candidate;
+import nz.ac.aut.hss.cryptanalysis.CorrelationAnalyzer;
+import nz.ac.aut.hss.cryptanalysis.CribAnalyzer;
 import nz.ac.aut.hss.cryptanalysis.EnigmaAnalyzer;
+import nz.ac.aut.hss.cryptanalysis.HillClimbingAnalyzer;
+import nz.ac.aut.hss.cryptanalysis.LoadStatistics;
+import nz.ac.aut.hss.cryptanalysis.ProgressListener;
+import nz.ac.aut.hss.cryptanalysis.RotorOrderAnalyzer;
+import nz.ac.aut.hss.cryptanalysis.RotorOrderCandidate;
+import nz.ac.aut.hss.cryptanalysis.ScoringCascade;
+import nz.ac.aut.hss.cryptanalysis.ScoringTables;
+import nz.ac.aut.hss.cryptanalysis.ShardCoordinator;
+import nz.ac.aut.hss.cryptanalysis.ShardWorker;
+import nz.ac.aut.hss.cryptanalysis.StageStatistics;
 import nz.ac.aut.hss.encrypt.Enigma;
+import nz.ac.aut.hss.encrypt.EnigmaSession;
+import nz.ac.aut.hss.encrypt.ParallelCipher;
 import nz.ac.aut.hss.encrypt.ReflectorEnigma;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
 public class Main {
+	/** Amount of climbs of the hill-climbing attack if the time limit is not reached before */
+	private static final int CLIMB_RESTARTS = 200;
+
 	public static void main(String[] args) throws Exception /* since it's only a small fun-project... */ {
 		try {
 			new Main().handleArgs(args);
@@ -17,14 +46,18 @@ public class Main {
 		}
 	}
 
-	private void handleArgs(final String[] args) throws IllegalArgumentException, IOException {
+	private void handleArgs(final String[] args)
+			throws IllegalArgumentException, IOException, InterruptedException, ExecutionException {
 		// first-level validation: duplicates
 		validateArgs(args);
 
 		// collect arguments
 		Mode mode = null;
-		String key = null, input = null;
-		int rotors = -1;
+		String key = null, input = null, coordinator = null, checkpoint = null, crib = null, cribPositions = null,
+				inFile = null, outFile = null, order = null;
+		boolean resume = false, searchOrder = false;
+		int rotors = -1, threads = -1, climbSeconds = -1, limitSeconds = -1, port = -1, survivors = -1,
+				correlated = -1;
 		for (int i = 0; i < args.length; i++) {
 			switch (args[i]) {
 				case "-h":
@@ -43,6 +76,29 @@ public class Main {
 				case "--attack":
 					mode = Mode.ATTACK;
 					break;
+				case "-w":
+				case "--worker":
+					if (i == args.length - 1) {
+						throw new IllegalArgumentException("No coordinator address specified");
+					}
+					mode = Mode.WORKER;
+					coordinator = args[++i];
+					break;
+				case "--checkpoint":
+					if (i == args.length - 1) {
+						throw new IllegalArgumentException("No checkpoint file specified");
+					}
+					checkpoint = args[++i];
+					break;
+				case "--resume":
+					resume = true;
+					break;
+				case "--coordinate":
+					if (i == args.length - 1) {
+						throw new IllegalArgumentException("No port to coordinate on specified");
+					}
+					port = Integer.parseInt(args[++i]);
+					break;
 				case "-k":
 				case "--key":
 					if (i == args.length - 1) {
@@ -64,6 +120,72 @@ public class Main {
 					}
 					rotors = Integer.parseInt(args[++i]);
 					break;
+				case "-t":
+				case "--threads":
+					if (i == args.length - 1) {
+						throw new IllegalArgumentException("No thread argument specified");
+					}
+					threads = Integer.parseInt(args[++i]);
+					break;
+				case "-c":
+				case "--climb":
+					if (i == args.length - 1) {
+						throw new IllegalArgumentException("No time limit for climbing specified");
+					}
+					climbSeconds = Integer.parseInt(args[++i]);
+					break;
+				case "-l":
+				case "--limit":
+					if (i == args.length - 1) {
+						throw new IllegalArgumentException("No time limit specified");
+					}
+					limitSeconds = Integer.parseInt(args[++i]);
+					break;
+				case "--cascade":
+					if (i == args.length - 1) {
+						throw new IllegalArgumentException("No amount of survivors specified");
+					}
+					survivors = Integer.parseInt(args[++i]);
+					break;
+				case "--crib":
+					if (i == args.length - 1) {
+						throw new IllegalArgumentException("No crib specified");
+					}
+					crib = args[++i];
+					break;
+				case "--crib-at":
+					if (i == args.length - 1) {
+						throw new IllegalArgumentException("No crib position specified");
+					}
+					cribPositions = args[++i];
+					break;
+				case "--in-file":
+					if (i == args.length - 1) {
+						throw new IllegalArgumentException("No input file specified");
+					}
+					inFile = args[++i];
+					break;
+				case "--out-file":
+					if (i == args.length - 1) {
+						throw new IllegalArgumentException("No output file specified");
+					}
+					outFile = args[++i];
+					break;
+				case "--order":
+					if (i == args.length - 1) {
+						throw new IllegalArgumentException("No rotor order specified");
+					}
+					order = args[++i];
+					break;
+				case "--search-order":
+					searchOrder = true;
+					break;
+				case "--correlate":
+					if (i == args.length - 1) {
+						throw new IllegalArgumentException("No amount of keys to rescore specified");
+					}
+					correlated = Integer.parseInt(args[++i]);
+					break;
 			}
 		}
 
@@ -71,6 +193,9 @@ public class Main {
 		if (mode == null) {
 			throw new IllegalArgumentException("No mode specified");
 		}
+		if (port != -1 && mode != Mode.ATTACK) {
+			throw new IllegalArgumentException("Only attacks can be coordinated");
+		}
 
 		switch (mode) {
 			case ENCRYPT:
@@ -79,14 +204,23 @@ public class Main {
 					throw new IllegalArgumentException("No key specified");
 				}
 				key = key.toUpperCase();
-				if (input == null) {
+				if (input == null && inFile == null) {
 					throw new IllegalArgumentException("No input specified");
 				}
+				if (input != null && inFile != null) {
+					throw new IllegalArgumentException("Input text and input file specified");
+				}
+				if (input != null && outFile != null) { // sessions would keep non-letters unlike the input text
+					throw new IllegalArgumentException("Only input files can be written to an output file");
+				}
 				if (rotors != -1) {
 					System.out.println("Warning: Amount of rotors will be adjusted " +
 							"to the key length (" + key.length() + ")");
 				}
 				rotors = key.length();
+				if (threads != -1 && inFile == null) {
+					System.out.println("Warning: Amount of threads is only used in attack mode and for input files");
+				}
 				break;
 			case ATTACK:
 				if (key != null) {
@@ -95,15 +229,96 @@ public class Main {
 				if (input == null) {
 					throw new IllegalArgumentException("No input specified");
 				}
-				if (rotors <= 0) {
+				if (inFile != null || outFile != null) {
+					throw new IllegalArgumentException("Only en- and decryption read and write files");
+				}
+				if (rotors <= 0 && order != null) {
+					rotors = order.split(",").length;
+				} else if (rotors <= 0) {
 					rotors = 3;
 					System.out.println("Warning: amount of rotors set to 3 by default");
 				}
+				if (threads <= 0) {
+					threads = Runtime.getRuntime().availableProcessors();
+				}
+				if (climbSeconds > 0 && limitSeconds > 0) {
+					System.out.println("Warning: Time limit is ignored, the climbing time is used instead");
+				}
+				if (port != -1 && (climbSeconds > 0 || limitSeconds > 0)) {
+					throw new IllegalArgumentException("Coordinated attacks try all keys without time limit");
+				}
+				if (checkpoint != null && (port != -1 || climbSeconds > 0)) {
+					throw new IllegalArgumentException(
+							"Only attacks that try all keys in one process are checkpointed");
+				}
+				if (survivors != -1 && (port != -1 || climbSeconds > 0)) {
+					throw new IllegalArgumentException("Only attacks that try all keys in one process use a cascade");
+				}
+				if (correlated != -1 && (port != -1 || climbSeconds > 0 || limitSeconds > 0 || checkpoint != null
+						|| survivors != -1)) {
+					throw new IllegalArgumentException("Correlation attacks can not be combined with other attacks");
+				}
+				if (crib != null && (port != -1 || climbSeconds > 0 || limitSeconds > 0 || checkpoint != null
+						|| survivors != -1 || correlated != -1)) {
+					throw new IllegalArgumentException("Crib attacks can not be combined with other attacks");
+				}
+				if (cribPositions != null && crib == null) {
+					throw new IllegalArgumentException("No crib specified for the crib position");
+				}
+				if (searchOrder && (port != -1 || climbSeconds > 0 || limitSeconds > 0 || checkpoint != null
+						|| survivors != -1 || correlated != -1 || crib != null)) {
+					throw new IllegalArgumentException("Rotor order searches can not be combined with other attacks");
+				}
+				if (searchOrder && order != null) {
+					System.out.println("Warning: Rotor order set in a rotor order search will be ignored");
+				}
+				if (resume && checkpoint == null) {
+					throw new IllegalArgumentException("No checkpoint file to resume from specified");
+				}
+				break;
+			case WORKER:
+				if (coordinator.lastIndexOf(':') < 0) {
+					throw new IllegalArgumentException("Coordinator address must be of the form <host>:<port>");
+				}
+				if (threads <= 0) {
+					threads = Runtime.getRuntime().availableProcessors();
+				}
 				break;
 		}
 
 		// execute
-		final Enigma enigma = new ReflectorEnigma(rotors);
+		if (mode == Mode.WORKER) { // the machine is determined by the coordinator
+			final int separator = coordinator.lastIndexOf(':');
+			System.out.printf("Working for %s with %d threads\n", coordinator, threads);
+			final int shards = new ShardWorker(coordinator.substring(0, separator),
+					Integer.parseInt(coordinator.substring(separator + 1)), threads).run();
+			System.out.printf("Searched %d shards\n", shards);
+			return;
+		}
+		final Enigma enigma = order != null ? new ReflectorEnigma(rotorOrderOf(order, rotors))
+				: new ReflectorEnigma(rotors);
+		if (inFile != null) { // stream instead of holding the whole text
+			try (ReadableByteChannel source = FileChannel.open(Paths.get(inFile), StandardOpenOption.READ);
+				 WritableByteChannel target = outFile != null
+						 ? FileChannel.open(Paths.get(outFile), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						 StandardOpenOption.TRUNCATE_EXISTING)
+						 : Channels.newChannel(System.out)) {
+				final long letters;
+				if (threads > 1) {
+					letters = new ParallelCipher(enigma, threads).transfer(source, target, key, mode == Mode.ENCRYPT);
+				} else {
+					final EnigmaSession session =
+							mode == Mode.ENCRYPT ? enigma.encryptSession(key) : enigma.decryptSession(key);
+					session.transfer(source, target);
+					letters = session.getLetters();
+				}
+				if (outFile != null) {
+					System.out.printf("%s %d letters with %d rotors and key %s to %s\n",
+							mode == Mode.ENCRYPT ? "Encrypted" : "Decrypted", letters, rotors, key, outFile);
+				}
+			}
+			return;
+		}
 		switch (mode) {
 			case ENCRYPT:
 				System.out.printf("Encrypting the following plaintext with %d rotors and key %s: %s\n",
@@ -118,19 +333,114 @@ public class Main {
 				System.out.printf("%s: %s\n", "Plaintext", plaintext);
 				break;
 			case ATTACK:
-				System.out.printf("Attacking the following ciphertext with %d rotors: %s\n", rotors, input);
+				System.out.printf("Attacking the following ciphertext with %d rotors and %d threads: %s\n",
+						rotors, threads, input);
 				long time = System.currentTimeMillis();
-				final String analyzedKey = new EnigmaAnalyzer(enigma).findKey(input);
+				final String analyzedKey;
+				Enigma analyzedEnigma = enigma;
+				if (port != -1) {
+					try (ShardCoordinator shardCoordinator = new ShardCoordinator(enigma, input, 1,
+							ShardCoordinator.DEFAULT_SHARDS, port)) {
+						System.out.printf("Waiting for workers on port %d\n", shardCoordinator.getPort());
+						final List<Candidate> candidates = shardCoordinator.run();
+						analyzedKey = candidates.isEmpty() ? null : candidates.get(0).getKey();
+					}
+				} else if (crib != null) {
+					int first = 0, last = Integer.MAX_VALUE;
+					if (cribPositions != null) {
+						final String[] positions = cribPositions.split(":", 2);
+						first = Integer.parseInt(positions[0]);
+						last = positions.length > 1 ? Integer.parseInt(positions[1]) : first;
+					}
+					analyzedKey = new CribAnalyzer(enigma, crib, first, last, ScoringTables.quadgrams())
+							.findKey(input);
+				} else if (searchOrder) {
+					final List<Candidate> candidates = new RotorOrderAnalyzer(enigma, threads).findCandidates(input, 1);
+					if (candidates.isEmpty()) {
+						analyzedKey = null;
+					} else {
+						final int[] rotorOrder = ((RotorOrderCandidate) candidates.get(0)).getRotorOrder();
+						System.out.printf("Rotor order: %s\n", rotorOrderToString(rotorOrder));
+						analyzedKey = candidates.get(0).getKey();
+						analyzedEnigma = enigma.withRotorOrder(rotorOrder);
+					}
+				} else if (correlated > 0) {
+					analyzedKey = new CorrelationAnalyzer(enigma, correlated).findKey(input);
+				} else if (climbSeconds > 0) {
+					analyzedKey = new HillClimbingAnalyzer(enigma, threads, CLIMB_RESTARTS, climbSeconds * 1000L)
+							.findKey(input);
+				} else {
+					final EnigmaAnalyzer analyzer = survivors > 0
+							? new EnigmaAnalyzer(enigma, threads, new ScoringCascade(
+							new ScoringCascade.Stage(ScoringTables.letters(), survivors, 0),
+							new ScoringCascade.Stage(ScoringTables.quadgrams())))
+							: new EnigmaAnalyzer(enigma, threads);
+					final Attack attack = analyzer.attack(input,
+							limitSeconds > 0 ? limitSeconds * 1000L : 0, new ProgressListener() {
+								@Override
+								public void progressed(final AttackProgress progress) {
+									System.out.print("\r" + progress);
+									System.out.flush();
+								}
+							}, checkpoint != null ? new File(checkpoint) : null, resume);
+					analyzedKey = attack.get();
+					System.out.println();
+					if (survivors > 0) {
+						for (StageStatistics stage : analyzer.getStatistics()) {
+							System.out.println(stage);
+						}
+					}
+					if (!attack.isExhausted()) {
+						System.out.println("Warning: Time limit reached, the key is the best one found so far");
+						if (checkpoint != null) {
+							System.out.println("Continue the attack with --checkpoint " + checkpoint + " --resume");
+						}
+					}
+				}
 				time = System.currentTimeMillis() - time;
-				final String analyzedPlaintext = enigma.decrypt(input, analyzedKey);
+				for (LoadStatistics table : ScoringTables.getStatistics()) {
+					System.out.println(table);
+				}
+				if (analyzedKey == null) {
+					System.out.printf("No key found (%dms)\n", time);
+					break;
+				}
+				final String analyzedPlaintext = analyzedEnigma.decrypt(input, analyzedKey);
 				System.out.printf("%s: %s (Key %s, %dms)\n", "Plaintext", analyzedPlaintext, analyzedKey, time);
 				break;
 		}
 	}
 
+	/**
+	 * @param order the numbers of the rotors, starting with 1, separated by commas
+	 * @param rotors the amount of rotors, -1 if not specified
+	 * @return the index of each rotor in {@link Enigma#ALPHABET_SCRAMBLED}
+	 */
+	private static int[] rotorOrderOf(final String order, final int rotors) {
+		final String[] numbers = order.split(",");
+		if (rotors != -1 && numbers.length != rotors) {
+			throw new IllegalArgumentException("Rotor order must contain " + rotors + " rotors");
+		}
+		final int[] rotorOrder = new int[numbers.length];
+		for (int i = 0; i < numbers.length; i++) {
+			rotorOrder[i] = Integer.parseInt(numbers[i].trim()) - 1;
+		}
+		return rotorOrder;
+	}
+
+	private static String rotorOrderToString(final int[] rotorOrder) {
+		final StringBuilder builder = new StringBuilder();
+		for (int rotor : rotorOrder) {
+			builder.append(builder.length() > 0 ? "," : "").append(rotor + 1);
+		}
+		return builder.toString();
+	}
+
 	private void validateArgs(final String[] args) {
 		Set<String> set = new HashSet<>();
 		for (String arg : args) {
+			if (!arg.startsWith("-")) // values may repeat, e.g. the same amount of rotors and threads
+				continue;
 			if (set.contains(arg))
 				throw new IllegalArgumentException("Argument " + arg + " specified twice");
 			set.add(arg);
@@ -144,11 +454,28 @@ public class Main {
 
 	private static void usage() {
 		System.out.println("Usage: java -jar Enigma.jar");
-		System.out.println("\t-e|--encrypt|-d|--decrypt|-a|--attack");
+		System.out.println("\t-e|--encrypt|-d|--decrypt|-a|--attack|-w|--worker <coordinator host>:<port>");
 		System.out.println("\t-i|--input <input text> [-k|--key <key>] [-r|--rotors <amount of rotors>]");
+		System.out.println("\t[--in-file <file to en-/decrypt instead of the input text>] " +
+				"[--out-file <file to write the result of the input file to>]");
+		System.out.println("\t[-t|--threads <amount of attack threads, defaults to the amount of processors>]");
+		System.out.println("\t[-c|--climb <time limit in seconds, " +
+				"attacks by hill-climbing instead of trying all keys>]");
+		System.out.println("\t[-l|--limit <time limit in seconds, the attack then yields the best key found so far>]");
+		System.out.println("\t[--checkpoint <file to save the progress of the attack to> [--resume]]");
+		System.out.println("\t[--cascade <amount of keys rated by letter frequencies that are rescored by quadgrams>]");
+		System.out.println("\t[--crib <known part of the plaintext> " +
+				"[--crib-at <first position of the crib in the plaintext>[:<last position>]]]");
+		System.out.println("\t[--correlate <amount of keys rated by letter frequencies for all keys at once " +
+				"that are rescored by quadgrams>]");
+		System.out.println("\t[--order <numbers of the rotors from 1 to 8, separated by commas, " +
+				"defaults to 1,2,3...>]");
+		System.out.println("\t[--search-order, attacks by also trying every rotor order]");
+		System.out.println("\t[--coordinate <port, " +
+				"attacks by handing shards of the keys to workers connecting to it>]");
 	}
 
 	private enum Mode {
-		ENCRYPT, DECRYPT, ATTACK
+		ENCRYPT, DECRYPT, ATTACK, WORKER
 	}
 }
@@ -0,0 +1,194 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+import java.util.Arrays;
+
+/**
+ * Finds words of a dictionary in a text in linear time, backed by primitive arrays only.
+ * <p>
+ * The matches are the same as those of a regular expression that alternates all words in the given order:
+ * scanning from left to right, the match at a position is the first word in dictionary order that starts there,
+ * and the search continues after the end of that match.
+ * @see <a href="http://dx.doi.org/10.1145/360825.360855">Aho, Corasick: Efficient string matching</a>
+ */
+final class AhoCorasickMatcher {
+	private static final int ALPHABET_SIZE = 26;
+	private static final int ROOT = 0;
+	private static final int NONE = -1;
+
+	/* trie: the children of a node are a linked list of siblings, the root's children are a direct table */
+	private int[] firstChild, nextSibling;
+	private byte[] label;
+	private final int[] rootChildren = new int[ALPHABET_SIZE];
+	private int nodes;
+	/** Index of the word ending at the node, NONE if no word ends there */
+	private int[] word;
+	/** Longest proper suffix of the node that is also in the trie */
+	private int[] fail;
+	/** Longest proper suffix of the node at which a word ends */
+	private int[] dictionary;
+
+	private final int[] wordLength;
+	private final long[] values;
+	/** Per-thread buffer of the best word starting at each position */
+	private final ThreadLocal<int[]> bestWords = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[0];
+		}
+	};
+
+	/**
+	 * @param words the words, consisting of the letters a-z only. Earlier words take precedence over later ones.
+	 * @param values the value of each word
+	 */
+	AhoCorasickMatcher(final String[] words, final long[] values) {
+		this.values = values.clone();
+		this.wordLength = new int[words.length];
+		int capacity = 1;
+		for (String w : words)
+			capacity += w.length();
+		firstChild = new int[capacity];
+		nextSibling = new int[capacity];
+		label = new byte[capacity];
+		word = new int[capacity];
+		Arrays.fill(rootChildren, NONE);
+		newNode((byte) 0);
+		for (int w = 0; w < words.length; w++)
+			add(words[w], w);
+		trim();
+		link();
+	}
+
+	private int newNode(final byte symbol) {
+		firstChild[nodes] = NONE;
+		nextSibling[nodes] = NONE;
+		label[nodes] = symbol;
+		word[nodes] = NONE;
+		return nodes++;
+	}
+
+	private void add(final String text, final int index) {
+		int node = ROOT;
+		for (int i = 0; i < text.length(); i++) {
+			final int symbol = text.charAt(i) - 'a';
+			if (symbol < 0 || symbol >= ALPHABET_SIZE)
+				throw new IllegalArgumentException("Word " + text + " contains a character other than a-z");
+			int next = child(node, symbol);
+			if (next == NONE) {
+				next = newNode((byte) symbol);
+				if (node == ROOT) {
+					rootChildren[symbol] = next;
+				} else {
+					nextSibling[next] = firstChild[node];
+					firstChild[node] = next;
+				}
+			}
+			node = next;
+		}
+		if (word[node] == NONE) // duplicates: the first word takes precedence
+			word[node] = index;
+		wordLength[index] = text.length();
+	}
+
+	private void trim() {
+		firstChild = Arrays.copyOf(firstChild, nodes);
+		nextSibling = Arrays.copyOf(nextSibling, nodes);
+		label = Arrays.copyOf(label, nodes);
+		word = Arrays.copyOf(word, nodes);
+	}
+
+	/**
+	 * Computes the failure and dictionary links in breadth-first order.
+	 */
+	private void link() {
+		fail = new int[nodes];
+		dictionary = new int[nodes];
+		final int[] queue = new int[nodes];
+		int head = 0, tail = 0;
+		fail[ROOT] = ROOT;
+		dictionary[ROOT] = NONE;
+		for (int child : rootChildren) {
+			if (child != NONE) {
+				fail[child] = ROOT;
+				dictionary[child] = NONE;
+				queue[tail++] = child;
+			}
+		}
+		while (head < tail) {
+			final int node = queue[head++];
+			for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+				final int target = transition(fail[node], label[child]);
+				fail[child] = target;
+				dictionary[child] = word[target] != NONE ? target : dictionary[target];
+				queue[tail++] = child;
+			}
+		}
+	}
+
+	private int child(final int node, final int symbol) {
+		if (node == ROOT)
+			return rootChildren[symbol];
+		for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+			if (label[child] == symbol)
+				return child;
+		}
+		return NONE;
+	}
+
+	private int transition(int node, final int symbol) {
+		while (true) {
+			final int next = child(node, symbol);
+			if (next != NONE)
+				return next;
+			if (node == ROOT)
+				return ROOT;
+			node = fail[node];
+		}
+	}
+
+	/**
+	 * Sums up the values of all matches in a part of the text.
+	 * @param text the text as indices in the alphabet, i.e. 0 for 'a' and 25 for 'z'. Negative values stand for
+	 * characters that are not part of any word.
+	 * @param from the index of the first character (inclusive)
+	 * @param to the index after the last character (exclusive)
+	 * @return the sum of the values of all matched words
+	 */
+	double sumOfMatches(final byte[] text, final int from, final int to) {
+		final int length = to - from;
+		int[] best = bestWords.get();
+		if (best.length < length) {
+			best = new int[length];
+			bestWords.set(best);
+		}
+		Arrays.fill(best, 0, length, Integer.MAX_VALUE);
+		// find the first word in dictionary order that starts at each position
+		int node = ROOT;
+		for (int i = from; i < to; i++) {
+			final int symbol = text[i];
+			if (symbol < 0) {
+				node = ROOT;
+				continue;
+			}
+			node = transition(node, symbol);
+			for (int end = word[node] != NONE ? node : dictionary[node]; end != NONE; end = dictionary[end]) {
+				final int w = word[end];
+				final int start = i - from - wordLength[w] + 1;
+				if (w < best[start])
+					best[start] = w;
+			}
+		}
+		// take matches from left to right without overlaps
+		double sum = 0;
+		for (int i = 0; i < length; ) {
+			final int w = best[i];
+			if (w == Integer.MAX_VALUE) {
+				i++;
+			} else {
+				sum += values[w];
+				i += wordLength[w];
+			}
+		}
+		return sum;
+	}
+}
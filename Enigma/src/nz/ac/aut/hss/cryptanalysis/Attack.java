@@ -0,0 +1,184 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An attack that runs in the background.
+ * <p>
+ * The attack ends when all keys are tried, when its time limit is reached or when it is cancelled.
+ * Once the time limit is reached, the result is the best key found until then.
+ * A cancelled attack has no result.
+ */
+public class Attack implements Future<String> {
+	private final long totalKeys;
+	private final int rotors;
+	private final TopKeyCollector collector;
+	private final long start;
+	private final long deadline;
+	private final AtomicLong keysTried = new AtomicLong();
+	/** Amount of keys tried by an earlier attack that this one continues */
+	private long resumedKeys;
+	private final CountDownLatch done = new CountDownLatch(1);
+	private volatile boolean cancelled;
+	private volatile Throwable failure;
+	private boolean reportedEnd;
+	/** The best key after all stages of the scoring cascade have rated the survivors of the search */
+	private volatile String rescoredKey;
+
+	/**
+	 * @param rotors the amount of rotors of the attacked machine
+	 * @param collector receives the keys that the search rates
+	 * @param timeLimit the time in milliseconds after which the search stops, 0 for no limit
+	 */
+	Attack(final int rotors, final TopKeyCollector collector, final long timeLimit) {
+		this.totalKeys = KeySpace.size(rotors);
+		this.rotors = rotors;
+		this.collector = collector;
+		this.start = System.currentTimeMillis();
+		this.deadline = timeLimit > 0 ? start + timeLimit : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Runs the search on a thread of its own.
+	 * @param search the search, has to stop soon after {@link #isStopped()} becomes true
+	 * @param listener receives the progress, may be null
+	 * @param interval the time in milliseconds between two progress reports
+	 */
+	void start(final Runnable search, final ProgressListener listener, final long interval) {
+		final ScheduledExecutorService reporter =
+				listener != null ? Executors.newSingleThreadScheduledExecutor() : null;
+		if (reporter != null) {
+			reporter.scheduleAtFixedRate(new Runnable() {
+				@Override
+				public void run() {
+					report(listener, false);
+				}
+			}, interval, interval, TimeUnit.MILLISECONDS);
+		}
+		final Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					search.run();
+				} catch (Throwable t) {
+					failure = t;
+				} finally {
+					if (reporter != null) {
+						reporter.shutdownNow();
+						report(listener, true);
+					}
+					done.countDown();
+				}
+			}
+		}, "attack");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private synchronized void report(final ProgressListener listener, final boolean end) {
+		if (reportedEnd)
+			return;
+		reportedEnd = end;
+		listener.progressed(getProgress());
+	}
+
+	/**
+	 * @return true if the search should not try any further keys
+	 */
+	boolean isStopped() {
+		return cancelled || System.currentTimeMillis() >= deadline;
+	}
+
+	/**
+	 * Continues an earlier attack, must be called before the search starts.
+	 * @param keys the amount of keys that the earlier attack has tried
+	 */
+	void resumed(final long keys) {
+		resumedKeys = keys;
+		keysTried.set(keys);
+	}
+
+	/**
+	 * @param keys the amount of keys that were just tried
+	 */
+	void tried(final long keys) {
+		keysTried.addAndGet(keys);
+	}
+
+	/**
+	 * @param key the best key of the last stage of the scoring cascade, which becomes the result of the attack
+	 */
+	void rescored(final String key) {
+		rescoredKey = key;
+	}
+
+	/**
+	 * @return true if every key was tried, i.e. the result is the best key overall
+	 */
+	public boolean isExhausted() {
+		return keysTried.get() == totalKeys;
+	}
+
+	/**
+	 * @return the current progress of the attack, rated by the first stage of the scoring cascade
+	 */
+	public AttackProgress getProgress() {
+		final long[] keys = new long[collector.getCapacity()];
+		final double[] scores = new double[collector.getCapacity()];
+		final boolean found = collector.rank(keys, scores) > 0;
+		return new AttackProgress(keysTried.get(), resumedKeys, totalKeys, System.currentTimeMillis() - start,
+				found ? KeySpace.keyOf(keys[0], rotors) : null, found ? scores[0] : Double.NEGATIVE_INFINITY);
+	}
+
+	@Override
+	public boolean cancel(final boolean mayInterruptIfRunning) {
+		if (done.getCount() == 0)
+			return false;
+		cancelled = true;
+		return true;
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	@Override
+	public boolean isDone() {
+		return cancelled || done.getCount() == 0;
+	}
+
+	/**
+	 * @return the best key found or null if no key could be found
+	 */
+	@Override
+	public String get() throws InterruptedException, ExecutionException {
+		if (!cancelled)
+			done.await();
+		return result();
+	}
+
+	@Override
+	public String get(final long timeout, final TimeUnit unit)
+			throws InterruptedException, ExecutionException, TimeoutException {
+		if (!cancelled && !done.await(timeout, unit))
+			throw new TimeoutException();
+		return result();
+	}
+
+	private String result() throws ExecutionException {
+		if (cancelled)
+			throw new CancellationException();
+		if (failure != null)
+			throw new ExecutionException(failure);
+		return rescoredKey != null ? rescoredKey : getProgress().getBestKey();
+	}
+}
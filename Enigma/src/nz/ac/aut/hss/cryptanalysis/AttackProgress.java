@@ -0,0 +1,81 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+/**
+ * Snapshot of a running attack.
+ */
+public class AttackProgress {
+	private final long keysTried;
+	private final long resumedKeys;
+	private final long totalKeys;
+	private final long elapsedMillis;
+	private final String bestKey;
+	private final double bestScore;
+
+	/**
+	 * @param keysTried the amount of keys tried, including those of an earlier attack that is continued
+	 * @param resumedKeys the amount of keys tried by an earlier attack that is continued
+	 * @param totalKeys the amount of possible keys
+	 * @param elapsedMillis the time since the attack has started
+	 * @param bestKey the best key found so far
+	 * @param bestScore the score of the best key
+	 */
+	public AttackProgress(final long keysTried, final long resumedKeys, final long totalKeys, final long elapsedMillis,
+						  final String bestKey, final double bestScore) {
+		this.keysTried = keysTried;
+		this.resumedKeys = resumedKeys;
+		this.totalKeys = totalKeys;
+		this.elapsedMillis = elapsedMillis;
+		this.bestKey = bestKey;
+		this.bestScore = bestScore;
+	}
+
+	public long getKeysTried() {
+		return keysTried;
+	}
+
+	public long getTotalKeys() {
+		return totalKeys;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	/**
+	 * @return the amount of keys tried per second since the attack has started
+	 */
+	public double getKeysPerSecond() {
+		return elapsedMillis > 0 ? (keysTried - resumedKeys) * 1000.0 / elapsedMillis : 0;
+	}
+
+	/**
+	 * @return the estimated time in milliseconds until all keys are tried, -1 if it can not be estimated yet
+	 */
+	public long getRemainingMillis() {
+		if (keysTried == resumedKeys)
+			return keysTried == totalKeys ? 0 : -1;
+		return (long) ((totalKeys - keysTried) * (double) elapsedMillis / (keysTried - resumedKeys));
+	}
+
+	/**
+	 * @return the best key found so far, null if no key has been rated yet
+	 */
+	public String getBestKey() {
+		return bestKey;
+	}
+
+	/**
+	 * @return the score of the best key, negative infinity if no key has been rated yet
+	 */
+	public double getBestScore() {
+		return bestScore;
+	}
+
+	@Override
+	public String toString() {
+		final long remaining = getRemainingMillis();
+		return String.format("%5.1f%% (%d/%d keys, %.0f keys/s, ETA %s), best key %s (%.2f)",
+				totalKeys > 0 ? keysTried * 100.0 / totalKeys : 100.0, keysTried, totalKeys, getKeysPerSecond(),
+				remaining < 0 ? "unknown" : (remaining + 999) / 1000 + "s", bestKey, bestScore);
+	}
+}
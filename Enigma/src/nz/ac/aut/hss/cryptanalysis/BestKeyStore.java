@@ -6,7 +6,7 @@ package nz.ac.aut.hss.cryptanalysis;
  */
 public class BestKeyStore {
 	private String key;
-	private double value = Double.MIN_VALUE;
+	private double value = Double.NEGATIVE_INFINITY;
 
 	public void updateIfBetter(String key, double value) {
 		if (value > this.value) {
@@ -15,6 +15,16 @@ public class BestKeyStore {
 		}
 	}
 
+	/**
+	 * Merges the best key of another store into this one.
+	 * On equal values, the key of this store is kept.
+	 * @param other the store to merge
+	 */
+	public void updateIfBetter(BestKeyStore other) {
+		if (other.key != null)
+			updateIfBetter(other.key, other.value);
+	}
+
 	public String getBestKey() {
 		return key;
 	}
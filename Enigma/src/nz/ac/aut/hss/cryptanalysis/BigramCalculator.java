@@ -10,7 +10,11 @@ import java.io.IOException;
  * a Fitness Measure</a>
  */
 public class BigramCalculator extends FrequencyCalculator {
+	static final String FILE = "bigrams.csv";
+	static final boolean HAS_HEADER = true;
+	static final String VALUE_DELIMITER = ",";
+
 	public BigramCalculator() throws IOException {
-		super("bigrams.csv", true, ",");
+		super(FILE, HAS_HEADER, VALUE_DELIMITER);
 	}
 }
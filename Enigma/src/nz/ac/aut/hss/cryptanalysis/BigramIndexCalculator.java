@@ -0,0 +1,92 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+import nz.ac.aut.hss.encrypt.Enigma;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Calculates bigram statistics of text in the english language from a dense table of log-probabilities, indexed
+ * like the {@link QgramIndexCalculator}. Unlike the {@link BigramCalculator}, every overlapping bigram is scored.
+ * <p>
+ * The probabilities are the overall counts of {@link BigramCalculator#FILE}, bigrams that do not occur get the
+ * log-probability of a hundredth occurrence.
+ */
+public class BigramIndexCalculator implements BoundedTextScore {
+	private static final int ALPHABET_SIZE = Enigma.ALPHABET.length;
+	/** Log-probability of every bigram, the first character being the major index */
+	private final double[] bigram = new double[ALPHABET_SIZE * ALPHABET_SIZE];
+	/** Best log-probability of any bigram, i.e. the best case for every bigram that is not scored yet */
+	private final double maxBigram;
+
+	/**
+	 * @throws IOException if the resource could not be read
+	 */
+	public BigramIndexCalculator() throws IOException {
+		final InputStream resource = getClass().getClassLoader().getResourceAsStream(BigramCalculator.FILE);
+		if (resource == null)
+			throw new IllegalStateException(BigramCalculator.FILE + " does not exist");
+		final Map<String, Long> counts = FrequencyCalculator.loadFrequencies(resource, BigramCalculator.HAS_HEADER,
+				BigramCalculator.VALUE_DELIMITER);
+		long total = 0;
+		for (long count : counts.values())
+			total += count;
+		final double floor = Math.log10(0.01 / total);
+		for (int i = 0; i < bigram.length; i++)
+			bigram[i] = floor;
+		for (Map.Entry<String, Long> entry : counts.entrySet()) {
+			final String word = entry.getKey();
+			if (word.length() != 2 || entry.getValue() <= 0)
+				throw new IllegalStateException("Invalid bigram " + word + " in " + BigramCalculator.FILE);
+			bigram[(word.charAt(0) - 'a') * ALPHABET_SIZE + word.charAt(1) - 'a'] =
+					Math.log10((double) entry.getValue() / total);
+		}
+		double max = Double.NEGATIVE_INFINITY;
+		for (double value : bigram)
+			max = Math.max(max, value);
+		maxBigram = max;
+	}
+
+	/**
+	 * Calculates the log-probability of the upper-case text. The higher the score, the more likely the text is
+	 * english.
+	 */
+	@Override
+	public double valueOf(final String text) {
+		final byte[] symbols = EnigmaAnalyzer.symbolsOf(text);
+		return valueOf(symbols, 0, symbols.length);
+	}
+
+	@Override
+	public double valueOf(final byte[] text, final int from, final int to) {
+		return valueOf(text, from, to, Double.NEGATIVE_INFINITY);
+	}
+
+	/**
+	 * Stops as soon as the score so far plus the best case for every remaining bigram does not exceed the minimum.
+	 * <p>
+	 * Two bigrams are scored per step into independent sums and the bound is checked once per step.
+	 */
+	@Override
+	public double valueOf(final byte[] text, final int from, final int to, final double minimum) {
+		if (to - from < 2)
+			return 0;
+		final double[] bigram = this.bigram;
+		int previous = text[from];
+		double score0 = 0, score1 = 0;
+		int i = from + 1; // the next character to append
+		for (; i + 1 < to; i += 2) {
+			final int current = text[i], next = text[i + 1];
+			score0 += bigram[previous * ALPHABET_SIZE + current];
+			score1 += bigram[current * ALPHABET_SIZE + next];
+			previous = next;
+			final double bestCase = score0 + score1 + (double) (to - 2 - i) * maxBigram;
+			if (bestCase < minimum)
+				return bestCase;
+		}
+		if (i < to)
+			score0 += bigram[previous * ALPHABET_SIZE + text[i]];
+		return score0 + score1;
+	}
+}
@@ -0,0 +1,193 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * Compact binary format of the n-gram resources that can be memory-mapped instead of parsed.
+ * <p>
+ * Every table starts with a header of three little-endian ints: {@link #MAGIC}, the kind of table and the amount
+ * of entries. Tables of {@link #VALUES} are followed by one float per entry, tables of {@link #WORDS} by one entry
+ * per word, consisting of the length of the word as byte, the lower-case letters of the word and its value as long.
+ * Words keep the order in which the text resources are matched.
+ * <p>
+ * The tables are generated from the text resources at build time by running this class:
+ * <code>java nz.ac.aut.hss.cryptanalysis.BinaryTables &lt;resource directory&gt;</code>
+ */
+public final class BinaryTables {
+	static final int MAGIC = 0x45474e54;
+	static final int VALUES = 1, WORDS = 2;
+	private static final String EXTENSION = ".bin";
+	private static final int HEADER_SIZE = 3 * 4;
+
+	private BinaryTables() {
+	}
+
+	/**
+	 * @param file the name of the text resource
+	 * @return the name of the binary table generated from the text resource
+	 */
+	static String binaryName(final String file) {
+		final int extension = file.lastIndexOf('.');
+		return (extension < 0 ? file : file.substring(0, extension)) + EXTENSION;
+	}
+
+	/**
+	 * Loads a table from the class path. Tables in the file system are memory-mapped,
+	 * so that their pages are shared with every other process that maps them.
+	 * @param name the name of the table resource
+	 * @return the table or null if there is no such resource
+	 * @throws IOException if the table could not be read
+	 */
+	static ByteBuffer load(final String name) throws IOException {
+		final URL resource = BinaryTables.class.getClassLoader().getResource(name);
+		if (resource == null)
+			return null;
+		final ByteBuffer table;
+		if ("file".equals(resource.getProtocol())) {
+			try (FileChannel channel = FileChannel.open(toPath(resource), StandardOpenOption.READ)) {
+				table = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+		} else { // e.g. inside a jar
+			try (InputStream input = resource.openStream()) {
+				table = ByteBuffer.wrap(readFully(input));
+			}
+		}
+		table.order(ByteOrder.LITTLE_ENDIAN);
+		if (table.remaining() < HEADER_SIZE || table.getInt(0) != MAGIC)
+			throw new IOException(name + " is not a binary table");
+		return table;
+	}
+
+	/**
+	 * @param table a table of {@link #VALUES}
+	 * @return a view of the values in the table
+	 */
+	static FloatBuffer readValues(final ByteBuffer table) throws IOException {
+		final int count = readHeader(table, VALUES);
+		final ByteBuffer values = table.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		values.position(HEADER_SIZE).limit(HEADER_SIZE + count * 4);
+		return values.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+	}
+
+	/**
+	 * @param table a table of {@link #WORDS}
+	 * @return a matcher of all words in the table, keeping their order
+	 */
+	static AhoCorasickMatcher readWords(final ByteBuffer table) throws IOException {
+		final int count = readHeader(table, WORDS);
+		final ByteBuffer entries = table.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		entries.position(HEADER_SIZE);
+		final String[] words = new String[count];
+		final long[] values = new long[count];
+		final byte[] letters = new byte[Byte.MAX_VALUE];
+		for (int i = 0; i < count; i++) {
+			final int length = entries.get();
+			entries.get(letters, 0, length);
+			words[i] = new String(letters, 0, length, StandardCharsets.US_ASCII);
+			values[i] = entries.getLong();
+		}
+		return new AhoCorasickMatcher(words, values);
+	}
+
+	private static int readHeader(final ByteBuffer table, final int kind) throws IOException {
+		if (table.getInt(4) != kind)
+			throw new IOException("Table is of kind " + table.getInt(4) + " instead of " + kind);
+		return table.getInt(8);
+	}
+
+	static ByteBuffer writeValues(final FloatBuffer values) {
+		final ByteBuffer table = header(VALUES, values.limit(), values.limit() * 4);
+		for (int i = 0; i < values.limit(); i++)
+			table.putFloat(values.get(i));
+		table.flip();
+		return table;
+	}
+
+	static ByteBuffer writeWords(final Map<String, Long> frequencies) {
+		int size = 0;
+		for (String word : frequencies.keySet()) {
+			if (word.length() > Byte.MAX_VALUE)
+				throw new IllegalArgumentException("Word " + word + " is too long");
+			size += 1 + word.length() + 8;
+		}
+		final ByteBuffer table = header(WORDS, frequencies.size(), size);
+		for (Map.Entry<String, Long> entry : frequencies.entrySet()) {
+			table.put((byte) entry.getKey().length());
+			table.put(entry.getKey().getBytes(StandardCharsets.US_ASCII));
+			table.putLong(entry.getValue());
+		}
+		table.flip();
+		return table;
+	}
+
+	private static ByteBuffer header(final int kind, final int count, final int size) {
+		final ByteBuffer table = ByteBuffer.allocate(HEADER_SIZE + size).order(ByteOrder.LITTLE_ENDIAN);
+		table.putInt(MAGIC).putInt(kind).putInt(count);
+		return table;
+	}
+
+	private static Path toPath(final URL resource) throws IOException {
+		try {
+			return Paths.get(resource.toURI());
+		} catch (URISyntaxException e) {
+			throw new IOException("Invalid resource location " + resource, e);
+		}
+	}
+
+	private static byte[] readFully(final InputStream input) throws IOException {
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[8192];
+		int read;
+		while ((read = input.read(buffer)) != -1)
+			output.write(buffer, 0, read);
+		return output.toByteArray();
+	}
+
+	private static void write(final File directory, final String file, final ByteBuffer table) throws IOException {
+		final Path path = new File(directory, binaryName(file)).toPath();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (table.hasRemaining())
+				channel.write(table);
+		}
+		System.out.println("Wrote " + path);
+	}
+
+	/**
+	 * Converts the text resources in the given directory to binary tables next to them.
+	 * @param args the resource directory
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.out.println("Usage: java " + BinaryTables.class.getName() + " <resource directory>");
+			return;
+		}
+		final File directory = new File(args[0]);
+		try (InputStream input = new FileInputStream(new File(directory, QgramIndexCalculator.FILE))) {
+			write(directory, QgramIndexCalculator.FILE, writeValues(QgramIndexCalculator.loadQgram(input)));
+		}
+		try (InputStream input = new FileInputStream(new File(directory, BigramCalculator.FILE))) {
+			write(directory, BigramCalculator.FILE, writeWords(FrequencyCalculator.loadFrequencies(input,
+					BigramCalculator.HAS_HEADER, BigramCalculator.VALUE_DELIMITER)));
+		}
+		try (InputStream input = new FileInputStream(new File(directory, QgramCalculator.FILE))) {
+			write(directory, QgramCalculator.FILE, writeWords(FrequencyCalculator.loadFrequencies(input,
+					QgramCalculator.HAS_HEADER, QgramCalculator.VALUE_DELIMITER)));
+		}
+	}
+}
@@ -0,0 +1,18 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+/**
+ * A text score that can stop scoring a text as soon as it can no longer reach a given score.
+ * @see TextScore
+ */
+public interface BoundedTextScore extends TextScore {
+	/**
+	 * Calculates the score of a part of the text unless it can not exceed the given minimum.
+	 * @param text the text as indices in the alphabet, i.e. 0 for 'a' and 25 for 'z'
+	 * @param from the index of the first character (inclusive)
+	 * @param to the index after the last character (exclusive)
+	 * @param minimum the score to beat, e.g. the score of the best text so far
+	 * @return the score of the text if it exceeds the minimum,
+	 * otherwise any value not greater than the minimum
+	 */
+	public double valueOf(byte[] text, int from, int to, double minimum);
+}
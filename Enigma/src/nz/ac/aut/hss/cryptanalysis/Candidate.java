@@ -0,0 +1,27 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+/**
+ * A key together with the score of the plaintext it decrypts to.
+ */
+public class Candidate {
+	private final String key;
+	private final double score;
+
+	public Candidate(final String key, final double score) {
+		this.key = key;
+		this.score = score;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public double getScore() {
+		return score;
+	}
+
+	@Override
+	public String toString() {
+		return key + " (" + score + ")";
+	}
+}
@@ -0,0 +1,147 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * State of an exhaustive search that allows to continue it after the process has ended.
+ * <p>
+ * All keys before the frontier have been tried and the best of them are stored with their scores,
+ * so the search continues at the frontier. Checkpoints are small property files that are replaced atomically,
+ * so a crash while writing leaves the previous checkpoint intact.
+ */
+public class Checkpoint {
+	private static final String REFLECTOR = "reflector", ROTORS = "rotors", CIPHERTEXT = "ciphertext",
+			FRONTIER = "frontier", KEYS = "keys", SCORES = "scores";
+	private static final String DELIMITER = ",";
+	private final boolean reflector;
+	private final int rotors;
+	private final String ciphertext;
+	private final long frontier;
+	private final long[] keys;
+	private final double[] scores;
+
+	/**
+	 * @param reflector whether the attacked machine has a reflector
+	 * @param rotors the amount of rotors of the attacked machine
+	 * @param ciphertext the encrypted text
+	 * @param frontier the number of the first key that has not been tried yet
+	 * @param keys the numbers of the best keys before the frontier
+	 * @param scores the score of each key
+	 */
+	public Checkpoint(final boolean reflector, final int rotors, final String ciphertext, final long frontier,
+					  final long[] keys, final double[] scores) {
+		if (keys.length != scores.length)
+			throw new IllegalArgumentException("Amount of keys and scores differ");
+		this.reflector = reflector;
+		this.rotors = rotors;
+		this.ciphertext = ciphertext;
+		this.frontier = frontier;
+		this.keys = keys.clone();
+		this.scores = scores.clone();
+	}
+
+	public boolean hasReflector() {
+		return reflector;
+	}
+
+	public int getRotors() {
+		return rotors;
+	}
+
+	public String getCiphertext() {
+		return ciphertext;
+	}
+
+	public long getFrontier() {
+		return frontier;
+	}
+
+	/**
+	 * @return true if all keys have been tried
+	 */
+	public boolean isComplete() {
+		return frontier == KeySpace.size(rotors);
+	}
+
+	long[] getKeys() {
+		return keys.clone();
+	}
+
+	double[] getScores() {
+		return scores.clone();
+	}
+
+	/**
+	 * @param file the checkpoint file
+	 * @return the checkpoint stored in the file
+	 * @throws IOException if the file could not be read or is not a checkpoint
+	 */
+	public static Checkpoint read(final File file) throws IOException {
+		final Properties properties = new Properties();
+		try (InputStream input = new FileInputStream(file)) {
+			properties.load(input);
+		}
+		try {
+			final String[] keyValues = split(properties.getProperty(KEYS)),
+					scoreValues = split(properties.getProperty(SCORES));
+			if (keyValues.length != scoreValues.length)
+				throw new IOException("Amount of keys and scores differ in " + file);
+			final long[] keys = new long[keyValues.length];
+			final double[] scores = new double[scoreValues.length];
+			for (int i = 0; i < keys.length; i++) {
+				keys[i] = Long.parseLong(keyValues[i]);
+				scores[i] = Double.parseDouble(scoreValues[i]);
+			}
+			return new Checkpoint(Boolean.parseBoolean(required(properties, REFLECTOR)),
+					Integer.parseInt(required(properties, ROTORS)), required(properties, CIPHERTEXT),
+					Long.parseLong(required(properties, FRONTIER)), keys, scores);
+		} catch (NumberFormatException e) {
+			throw new IOException(file + " is not a valid checkpoint", e);
+		}
+	}
+
+	/**
+	 * Replaces the file with this checkpoint.
+	 * @param file the checkpoint file
+	 * @throws IOException if the file could not be written
+	 */
+	public void write(final File file) throws IOException {
+		final Properties properties = new Properties();
+		properties.setProperty(REFLECTOR, String.valueOf(reflector));
+		properties.setProperty(ROTORS, String.valueOf(rotors));
+		properties.setProperty(CIPHERTEXT, ciphertext);
+		properties.setProperty(FRONTIER, String.valueOf(frontier));
+		final StringBuilder keyValues = new StringBuilder(), scoreValues = new StringBuilder();
+		for (int i = 0; i < keys.length; i++) {
+			keyValues.append(i > 0 ? DELIMITER : "").append(keys[i]);
+			scoreValues.append(i > 0 ? DELIMITER : "").append(scores[i]);
+		}
+		properties.setProperty(KEYS, keyValues.toString());
+		properties.setProperty(SCORES, scoreValues.toString());
+		final File temporary = new File(file.getPath() + ".tmp");
+		try (OutputStream output = new FileOutputStream(temporary)) {
+			properties.store(output, "Enigma key search");
+		}
+		Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static String required(final Properties properties, final String name) throws IOException {
+		final String value = properties.getProperty(name);
+		if (value == null)
+			throw new IOException("Checkpoint lacks the " + name);
+		return value;
+	}
+
+	private static String[] split(final String values) {
+		return values == null || values.isEmpty() ? new String[0] : values.split(DELIMITER);
+	}
+}
@@ -0,0 +1,230 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+import nz.ac.aut.hss.encrypt.Enigma;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Rates all keys at once by the letter frequencies of their plaintexts and rescores the best of them with a more
+ * precise text score.
+ * <p>
+ * The keystream of every key is a window over the offset sequence of all rotor states (see {@link KeystreamTable}),
+ * so the letter frequency score of the key with state <code>t</code> is
+ * <code>sum_i f_c[i](G[t + i])</code>, where <code>G</code> is the offset sequence and <code>f_c(g)</code> is the
+ * log-probability of the plaintext character of ciphertext character <code>c</code> at offset <code>g</code>.
+ * Expanding <code>f_c</code> in a discrete Fourier series over the 26 offsets turns this sum into 13 complex
+ * cross-correlations of the ciphertext with the offset sequence. They are computed block-wise with the fast Fourier
+ * transform (overlap-save), in <code>O(N log L)</code> instead of <code>O(N L)</code> for <code>N</code> keys and a
+ * ciphertext of length <code>L</code>. This pays off for long ciphertexts, short ones are searched faster by the
+ * {@link EnigmaAnalyzer}.
+ */
+public class CorrelationAnalyzer implements CryptAnalyzer {
+	private static final int ALPHABET_SIZE = Enigma.ALPHABET.length;
+	/** Amount of Fourier coefficients that are correlated, the others are their complex conjugates */
+	private static final int HARMONICS = ALPHABET_SIZE / 2;
+	/** Minimum size of the Fourier transforms */
+	private static final int MIN_TRANSFORM_SIZE = 64;
+	private final LetterFrequencyScore letterScore = ScoringTables.letters();
+	private final TextScore textScore;
+	private final int rotors;
+	private final int survivors;
+	private final KeystreamTable keystream;
+	/** Plaintext character for every offset (major) and ciphertext character (minor) */
+	private final byte[] decryption;
+	/** Real and imaginary parts of e^(2 pi i j / 26) */
+	private final double[] rootsRe = new double[ALPHABET_SIZE], rootsIm = new double[ALPHABET_SIZE];
+
+	/**
+	 * Rescores the best keys with a {@link QgramIndexCalculator}.
+	 * @param machine the machine to attack
+	 * @param survivors the amount of best keys by letter frequencies to rescore
+	 * @throws IOException if the text statistics could not be loaded or the keystream table could not be mapped
+	 */
+	public CorrelationAnalyzer(final Enigma machine, final int survivors) throws IOException {
+		this(machine, survivors, ScoringTables.quadgrams());
+	}
+
+	/**
+	 * @param machine the machine to attack
+	 * @param survivors the amount of best keys by letter frequencies to rescore
+	 * @param textScore the score to rescore the best keys with
+	 * @throws IOException if the keystream table could not be mapped
+	 */
+	public CorrelationAnalyzer(final Enigma machine, final int survivors, final TextScore textScore)
+			throws IOException {
+		if (survivors <= 0)
+			throw new IllegalArgumentException("Amount of survivors must be positive");
+		this.rotors = machine.getRotors();
+		this.survivors = survivors;
+		this.textScore = textScore;
+		this.keystream = new KeystreamTable(machine);
+		this.decryption = machine.getDecryptionTable();
+		for (int j = 0; j < ALPHABET_SIZE; j++) {
+			rootsRe[j] = Math.cos(2 * Math.PI * j / ALPHABET_SIZE);
+			rootsIm[j] = Math.sin(2 * Math.PI * j / ALPHABET_SIZE);
+		}
+	}
+
+	/**
+	 * Attempts to find the key of the given cipher text.
+	 * @param ciphertext the encrypted text
+	 * @return the key used to generate the given ciphertext or null if no key could be found
+	 */
+	@Override
+	public String findKey(final String ciphertext) {
+		if (!StringUtils.isAllUpperCase(ciphertext))
+			throw new IllegalArgumentException("Ciphertext is not all upper-case");
+		final byte[] symbols = EnigmaAnalyzer.symbolsOf(ciphertext);
+		final TopKeyCollector best = new TopKeyCollector(survivors, 1);
+		final Correlation correlation = new Correlation(symbols);
+		final double[] scores = new double[correlation.step()];
+		final long size = keystream.length();
+		for (long state = 0; state < size; state += scores.length) {
+			final int count = (int) Math.min(correlation.scores(state, scores), size - state);
+			for (int i = 0; i < count; i++) {
+				if (scores[i] >= best.threshold()) // the digit reversal of the state is its key number
+					best.offer(KeySpace.stateOf(state + i, rotors), scores[i]);
+			}
+		}
+		return rescore(symbols, best);
+	}
+
+	private String rescore(final byte[] symbols, final TopKeyCollector collector) {
+		final long[] keys = new long[survivors];
+		final double[] scores = new double[survivors];
+		final int found = collector.rank(keys, scores);
+		final byte[] plaintext = new byte[symbols.length];
+		final TopKeyCollector best = new TopKeyCollector(1, 1);
+		for (int k = 0; k < found; k++) {
+			final long state = KeySpace.stateOf(keys[k], rotors);
+			boolean changed = false;
+			for (int i = 0; i < symbols.length; i++) {
+				plaintext[i] = decryption[keystream.offsetAt(state + i) * ALPHABET_SIZE + symbols[i]];
+				changed |= plaintext[i] != symbols[i];
+			}
+			// skip texts that were not encoded at all, like the other analyzers
+			if (changed)
+				best.offer(keys[k], textScore.valueOf(plaintext, 0, plaintext.length));
+		}
+		return best.rank(keys, scores) > 0 ? KeySpace.keyOf(keys[0], rotors) : null;
+	}
+
+	@Override
+	public List<String> findKeys(final List<String> ciphertexts) {
+		final List<String> keys = new ArrayList<>(ciphertexts.size());
+		for (String ciphertext : ciphertexts)
+			keys.add(findKey(ciphertext));
+		return keys;
+	}
+
+	/**
+	 * The letter frequency scores of all rotor states for one ciphertext, computed block by block.
+	 * Not thread-safe.
+	 */
+	class Correlation {
+		private final FourierTransform transform;
+		private final int length;
+		/** Sum of the constant Fourier coefficients, the same for every state */
+		private final double constant;
+		/** Transformed, reversed and weighted coefficients of each harmonic at each ciphertext position */
+		private final double[][] kernelRe, kernelIm;
+		private final double[] blockRe, blockIm, sumRe, sumIm;
+		private final byte[] offsets;
+		/** Index of the root of unity of the current harmonic at each position of the block */
+		private final int[] roots;
+
+		/**
+		 * @param symbols the ciphertext as indices in the alphabet
+		 */
+		Correlation(final byte[] symbols) {
+			this.length = symbols.length;
+			this.transform = new FourierTransform(
+					Math.max(MIN_TRANSFORM_SIZE, Integer.highestOneBit(Math.max(1, 4 * length - 1)) << 1));
+			final int size = transform.size();
+			// coefficients[c][m] = 1/26 sum_g f_c(g) e^(-2 pi i m g / 26)
+			final double[][] coefficientsRe = new double[ALPHABET_SIZE][HARMONICS + 1];
+			final double[][] coefficientsIm = new double[ALPHABET_SIZE][HARMONICS + 1];
+			for (int c = 0; c < ALPHABET_SIZE; c++) {
+				for (int g = 0; g < ALPHABET_SIZE; g++) {
+					final double f = letterScore.logProbabilityOf(decryption[g * ALPHABET_SIZE + c]);
+					for (int m = 0; m <= HARMONICS; m++) {
+						final int j = m * g % ALPHABET_SIZE;
+						coefficientsRe[c][m] += f * rootsRe[j] / ALPHABET_SIZE;
+						coefficientsIm[c][m] -= f * rootsIm[j] / ALPHABET_SIZE;
+					}
+				}
+			}
+			double constant = 0;
+			for (byte symbol : symbols)
+				constant += coefficientsRe[symbol][0];
+			this.constant = constant;
+			// harmonics m and 26 - m are complex conjugates and add up to twice the real part of harmonic m
+			this.kernelRe = new double[HARMONICS][size];
+			this.kernelIm = new double[HARMONICS][size];
+			for (int m = 1; m <= HARMONICS; m++) {
+				final double weight = m == HARMONICS ? 1 : 2;
+				final double[] re = kernelRe[m - 1], im = kernelIm[m - 1];
+				for (int i = 0; i < length; i++) {
+					re[length - 1 - i] = weight * coefficientsRe[symbols[i]][m];
+					im[length - 1 - i] = weight * coefficientsIm[symbols[i]][m];
+				}
+				transform.transform(re, im);
+			}
+			this.blockRe = new double[size];
+			this.blockIm = new double[size];
+			this.sumRe = new double[size];
+			this.sumIm = new double[size];
+			this.offsets = new byte[size];
+			this.roots = new int[size];
+		}
+
+		/**
+		 * @return the amount of states that one call of {@link #scores(long, double[])} rates
+		 */
+		int step() {
+			return transform.size() - length + 1;
+		}
+
+		/**
+		 * Rates the states from the given one on.
+		 * @param from the first state
+		 * @param scores receives the score of the states from on, at least {@link #step()} long
+		 * @return the amount of states rated, i.e. {@link #step()}
+		 */
+		int scores(final long from, final double[] scores) {
+			final int size = transform.size();
+			for (int k = 0; k < size; k++)
+				offsets[k] = (byte) keystream.offsetAt(from + k);
+			Arrays.fill(sumRe, 0);
+			Arrays.fill(sumIm, 0);
+			Arrays.fill(roots, 0);
+			for (int m = 1; m <= HARMONICS; m++) {
+				for (int k = 0; k < size; k++) {
+					// the index of harmonic m is m * offset, modulo the alphabet size
+					int j = roots[k] + offsets[k];
+					if (j >= ALPHABET_SIZE)
+						j -= ALPHABET_SIZE;
+					roots[k] = j;
+					blockRe[k] = rootsRe[j];
+					blockIm[k] = rootsIm[j];
+				}
+				transform.transform(blockRe, blockIm);
+				final double[] re = kernelRe[m - 1], im = kernelIm[m - 1];
+				for (int k = 0; k < size; k++) {
+					sumRe[k] += blockRe[k] * re[k] - blockIm[k] * im[k];
+					sumIm[k] += blockRe[k] * im[k] + blockIm[k] * re[k];
+				}
+			}
+			transform.inverse(sumRe, sumIm);
+			// the first length - 1 values of the circular convolution wrap around and are discarded
+			final int step = step();
+			for (int t = 0; t < step; t++)
+				scores[t] = constant + sumRe[t + length - 1];
+			return step;
+		}
+	}
+}
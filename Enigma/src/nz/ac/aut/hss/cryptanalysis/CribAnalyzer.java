@@ -0,0 +1,226 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+import nz.ac.aut.hss.encrypt.Enigma;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds keys from a known part of the plaintext (a crib) instead of trying all keys.
+ * <p>
+ * Every pair of ciphertext and crib character allows only some sums of rotor offsets at its position, given as a
+ * bitmask of offsets. The rotors count like an odometer, so the rotor positions are solved digit by digit:
+ * choosing the position of the first rotor fixes its offset at every crib position, which leaves a required sum of
+ * the other rotors. As these rotors only move when the first one completes a rotation, their requirements are
+ * intersected over each run, and so on for the next rotor. A choice is dropped as soon as a requirement can not be
+ * met, so all keys that match a crib of a few characters are found in time linear in its length.
+ * <p>
+ * Of all matching keys, the one whose whole plaintext rates best is the result.
+ */
+public class CribAnalyzer implements CryptAnalyzer {
+	private static final int ALPHABET_SIZE = Enigma.ALPHABET.length;
+	private static final int ALL_OFFSETS = (1 << ALPHABET_SIZE) - 1;
+	private final Enigma machine;
+	private final int rotors;
+	private final String crib;
+	private final int firstPosition, lastPosition;
+	private final TextScore textScore;
+	/** Plaintext character for every offset (major) and ciphertext character (minor) */
+	private final byte[] decryption;
+	/** Offset that each rotor adds in each position */
+	private final int[][] rotorOffsets;
+
+	/**
+	 * Tries the crib at every position of the ciphertext and rates the matching keys with a
+	 * {@link QgramIndexCalculator}.
+	 * @param machine the machine to attack
+	 * @param crib the known part of the plaintext
+	 * @throws IOException if the text statistics could not be loaded
+	 */
+	public CribAnalyzer(final Enigma machine, final String crib) throws IOException {
+		this(machine, crib, 0, Integer.MAX_VALUE, ScoringTables.quadgrams());
+	}
+
+	/**
+	 * @param machine the machine to attack
+	 * @param crib the known part of the plaintext
+	 * @param firstPosition the first position in the plaintext where the crib may start
+	 * @param lastPosition the last position in the plaintext where the crib may start, positions beyond the end of
+	 * the ciphertext are ignored
+	 * @param textScore the score to rate the plaintexts of the matching keys with
+	 */
+	public CribAnalyzer(final Enigma machine, final String crib, final int firstPosition, final int lastPosition,
+						final TextScore textScore) {
+		if (crib.isEmpty() || !StringUtils.isAlpha(crib))
+			throw new IllegalArgumentException("Crib must consist of letters only");
+		if (firstPosition < 0 || firstPosition > lastPosition)
+			throw new IllegalArgumentException("Invalid crib positions [" + firstPosition + ", " + lastPosition + "]");
+		this.machine = machine;
+		this.rotors = machine.getRotors();
+		this.crib = crib.toUpperCase();
+		this.firstPosition = firstPosition;
+		this.lastPosition = lastPosition;
+		this.textScore = textScore;
+		this.decryption = machine.getDecryptionTable();
+		this.rotorOffsets = new int[rotors][ALPHABET_SIZE];
+		for (int r = 0; r < rotors; r++) {
+			for (int p = 0; p < ALPHABET_SIZE; p++)
+				rotorOffsets[r][p] = machine.getRotorOffset(r, p);
+		}
+	}
+
+	/**
+	 * Attempts to find the key of the given cipher text.
+	 * @param ciphertext the encrypted text
+	 * @return the best key that decrypts the crib at one of its positions, null if there is no such key
+	 */
+	@Override
+	public String findKey(final String ciphertext) {
+		final List<Candidate> candidates = findCandidates(ciphertext, 1);
+		return candidates.isEmpty() ? null : candidates.get(0).getKey();
+	}
+
+	/**
+	 * Finds the keys that decrypt the crib at one of its positions.
+	 * Of equally scored keys, the one that comes first in the order AAA, AAB... ranks higher.
+	 * @param ciphertext the encrypted text
+	 * @param count the maximum amount of keys to find
+	 * @return the best matching keys, best first
+	 */
+	public List<Candidate> findCandidates(final String ciphertext, final int count) {
+		if (!StringUtils.isAllUpperCase(ciphertext))
+			throw new IllegalArgumentException("Ciphertext is not all upper-case");
+		final byte[] symbols = EnigmaAnalyzer.symbolsOf(ciphertext);
+		final TopKeyCollector collector = new TopKeyCollector(count, 1);
+		final Solutions solutions = new Solutions(symbols, collector);
+		final int last = Math.min(lastPosition, symbols.length - crib.length());
+		for (int position = firstPosition; position <= last; position++) {
+			final int[] masks = new int[crib.length()];
+			boolean possible = true;
+			for (int i = 0; i < masks.length && possible; i++) {
+				masks[i] = offsetsOf(symbols[position + i], crib.charAt(i) - 'A');
+				possible = masks[i] != 0;
+			}
+			if (possible)
+				solve(0, masks, masks.length, 0, 1, position, solutions);
+		}
+		final long[] keys = new long[count];
+		final double[] scores = new double[count];
+		final int found = collector.rank(keys, scores);
+		final List<Candidate> candidates = new ArrayList<>(found);
+		for (int i = 0; i < found; i++)
+			candidates.add(new Candidate(KeySpace.keyOf(keys[i], rotors), scores[i]));
+		return candidates;
+	}
+
+	@Override
+	public List<String> findKeys(final List<String> ciphertexts) {
+		final List<String> keys = new ArrayList<>(ciphertexts.size());
+		for (String ciphertext : ciphertexts)
+			keys.add(findKey(ciphertext));
+		return keys;
+	}
+
+	/**
+	 * @return the bitmask of offsets that decrypt the ciphertext character to the plaintext character
+	 */
+	private int offsetsOf(final int ciphertext, final int plaintext) {
+		int mask = 0;
+		for (int offset = 0; offset < ALPHABET_SIZE; offset++) {
+			if (decryption[offset * ALPHABET_SIZE + ciphertext] == plaintext)
+				mask |= 1 << offset;
+		}
+		return mask;
+	}
+
+	/**
+	 * Chooses the position of one rotor.
+	 * @param rotor the index of the rotor
+	 * @param masks the allowed offset sums of this and the following rotors for consecutive states of these rotors,
+	 * beginning with the state at the start of the crib
+	 * @param count the amount of masks
+	 * @param state the state of the previous rotors at the start of the crib
+	 * @param weight the value of one step of this rotor in the state
+	 * @param position the position of the crib in the ciphertext
+	 */
+	private void solve(final int rotor, final int[] masks, final int count, final long state, final long weight,
+					   final int position, final Solutions solutions) {
+		final int[] offsets = rotorOffsets[rotor];
+		final boolean last = rotor == rotors - 1;
+		final int[] next = new int[count / ALPHABET_SIZE + 2];
+		for (int start = 0; start < ALPHABET_SIZE; start++) {
+			Arrays.fill(next, ALL_OFFSETS);
+			boolean possible = true;
+			for (int j = 0; j < count && possible; j++) {
+				final int p = start + j;
+				// the other rotors have to add the remaining sum
+				final int rest = rotate(masks[j], offsets[p % ALPHABET_SIZE]);
+				if (last) {
+					possible = (rest & 1) != 0;
+				} else {
+					next[p / ALPHABET_SIZE] &= rest;
+					possible = next[p / ALPHABET_SIZE] != 0;
+				}
+			}
+			if (!possible)
+				continue;
+			final long nextState = state + start * weight;
+			if (last)
+				solutions.add(nextState, position);
+			else
+				solve(rotor + 1, next, (start + count - 1) / ALPHABET_SIZE + 1, nextState, weight * ALPHABET_SIZE,
+						position, solutions);
+		}
+	}
+
+	/**
+	 * @param mask the allowed offset sums
+	 * @param offset the offset of one rotor
+	 * @return the allowed offset sums of the other rotors
+	 */
+	private static int rotate(final int mask, final int offset) {
+		return offset == 0 ? mask : (mask >>> offset | mask << (ALPHABET_SIZE - offset)) & ALL_OFFSETS;
+	}
+
+	/**
+	 * Rates the keys of the solved rotor states.
+	 */
+	private class Solutions {
+		private final byte[] symbols;
+		private final TopKeyCollector collector;
+		private final long size = KeySpace.size(rotors);
+		private final int[] positions = new int[rotors];
+		private final byte[] offsets;
+		private final byte[] plaintext;
+		/** Keys that match the crib at more than one position are only rated once */
+		private final Set<Long> keys = new HashSet<>();
+
+		private Solutions(final byte[] symbols, final TopKeyCollector collector) {
+			this.symbols = symbols;
+			this.collector = collector;
+			this.offsets = new byte[symbols.length];
+			this.plaintext = new byte[symbols.length];
+		}
+
+		/**
+		 * @param state the rotor state at the start of the crib
+		 * @param position the position of the crib in the ciphertext
+		 */
+		private void add(final long state, final int position) {
+			// the digit reversal of the initial state is its key number
+			final long num = KeySpace.stateOf(((state - position) % size + size) % size, rotors);
+			if (!keys.add(num))
+				return;
+			KeySpace.positionsOf(num, positions);
+			machine.keystream(positions, symbols.length, offsets);
+			for (int i = 0; i < symbols.length; i++)
+				plaintext[i] = decryption[offsets[i] * ALPHABET_SIZE + symbols[i]];
+			collector.offer(num, textScore.valueOf(plaintext, 0, plaintext.length));
+		}
+	}
+}
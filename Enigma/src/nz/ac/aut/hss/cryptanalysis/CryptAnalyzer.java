@@ -1,9 +1,18 @@
 package nz.ac.aut.hss.cryptanalysis;
 
+import java.util.List;
+
 /**
  * @author Martin Schrimpf
  * @created 31.07.2014
  */
 public interface CryptAnalyzer {
 	public String findKey(String ciphertext);
+
+	/**
+	 * Attempts to find the keys of many ciphertexts at once.
+	 * @param ciphertexts the encrypted texts
+	 * @return the key of each ciphertext in the same order, null where no key could be found
+	 */
+	public List<String> findKeys(List<String> ciphertexts);
 }
@@ -1,83 +1,484 @@
 package nz.ac.aut.hss.cryptanalysis;
 
 import nz.ac.aut.hss.encrypt.Enigma;
+import nz.ac.aut.hss.encrypt.ReflectorEnigma;
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  *
  */
 public class EnigmaAnalyzer implements CryptAnalyzer {
-	private final TextScore textScore;
-	private final Pattern whitespacePattern;
 	private static final int ALPHABET_SIZE = Enigma.ALPHABET.length;
+	private final ScoringCascade cascade;
+	/** The score of the first stage, which rates every key */
+	private final TextScore textScore;
+	/** The score of the first stage if it supports bounded scoring, null otherwise */
+	private final BoundedTextScore boundedScore;
+	/** The statistics of the stages in the last search */
+	private volatile List<StageStatistics> statistics = Collections.emptyList();
 	private final Enigma machine;
 	private final int rotors;
+	private final int threads;
+	/**
+	 * Pool shared by all searches with more than one thread, e.g. the segments of a checkpointed attack, null for a
+	 * single thread. Its workers are daemon threads that terminate when they are idle.
+	 */
+	private final ForkJoinPool pool;
+	/** Plaintext character for every offset and ciphertext character */
+	private final byte[] decryption;
+	/** Amount of keys that one task searches without splitting any further */
+	private static final long CHUNK_SIZE = 2048;
+	/** Amount of keys that are tried before checking whether the search should stop */
+	private static final long BLOCK_SIZE = 256;
+	/** Time in milliseconds between two progress reports of an attack */
+	private static final long PROGRESS_INTERVAL = 500;
+	/** Time in milliseconds between two checkpoints of an attack */
+	private static final long CHECKPOINT_INTERVAL = 30000;
+	/** Maximum amount of keys that are searched completely before the frontier of a checkpoint moves on */
+	private static final long MAX_SEGMENT_SIZE = 1 << 20;
 
 	public EnigmaAnalyzer(final Enigma machine) throws IOException {
+		this(machine, 1);
+	}
+
+	/**
+	 * @param machine the machine to attack
+	 * @param threads the amount of threads to search the key space with
+	 * @throws IOException if the text statistics could not be loaded
+	 */
+	public EnigmaAnalyzer(final Enigma machine, final int threads) throws IOException {
+		this(machine, threads, ScoringTables.bigrams());
+	}
+
+	/**
+	 * @param machine the machine to attack
+	 * @param threads the amount of threads to search the key space with
+	 * @param textScore the score to rate plaintexts with, must be thread-safe if more than one thread is used.
+	 * If it is a {@link BoundedTextScore}, plaintexts are only scored until they can not beat the best key anymore.
+	 */
+	public EnigmaAnalyzer(final Enigma machine, final int threads, final TextScore textScore) {
+		this(machine, threads, new ScoringCascade(new ScoringCascade.Stage(textScore)));
+	}
+
+	/**
+	 * @param machine the machine to attack
+	 * @param threads the amount of threads to search the key space with
+	 * @param cascade the stages to rate plaintexts with. The score of the first stage is applied to every key and
+	 * must be thread-safe if more than one thread is used, the later stages only rate the survivors of their previous
+	 * stage. If a score is a {@link BoundedTextScore}, plaintexts are only scored until they can not survive anymore.
+	 */
+	public EnigmaAnalyzer(final Enigma machine, final int threads, final ScoringCascade cascade) {
+		if (threads <= 0)
+			throw new IllegalArgumentException("Amount of threads must be positive");
 		this.machine = machine;
 		this.rotors = machine.getRotors();
-		textScore = new BigramCalculator();
-		whitespacePattern = Pattern.compile("\\s");
+		this.threads = threads;
+		this.pool = threads > 1 ? new ForkJoinPool(threads) : null;
+		this.decryption = machine.getDecryptionTable();
+		this.cascade = cascade;
+		this.textScore = cascade.getStages().get(0).getScore();
+		this.boundedScore = textScore instanceof BoundedTextScore ? (BoundedTextScore) textScore : null;
+	}
+
+	/**
+	 * @return how many keys each stage of the scoring cascade has rated and rejected in the last search of this
+	 * analyzer, summed up over all ciphertexts of a batch. An attack only counts once it has completed.
+	 */
+	public List<StageStatistics> getStatistics() {
+		return statistics;
 	}
 
 	/**
 	 * Attempts to find the key of the given cipher text.
-	 * Assumes a 3-roto enigma machine.
+	 * If more than one thread is used, the key space is split into chunks that are searched on a fork/join pool.
+	 * The result is the same as with a single thread.
 	 * @param ciphertext the encrypted text
 	 * @return the key used to generate the given ciphertext or null if no key could be found
 	 */
 	public String findKey(String ciphertext) {
-		if (!StringUtils.isAllUpperCase(ciphertext))
-			throw new IllegalArgumentException("Ciphertext is not all upper-case");
-		final BestKeyStore bestKey = new BestKeyStore();
+		final List<Candidate> candidates = findCandidates(ciphertext, 1);
+		return candidates.isEmpty() ? null : candidates.get(0).getKey();
+	}
+
+	/**
+	 * Finds the best keys of the given cipher text, e.g. to rescore them with a more expensive text score.
+	 * Of equally scored keys, the one that comes first in the order AAA, AAB... ranks higher.
+	 * @param ciphertext the encrypted text
+	 * @param count the maximum amount of keys to find
+	 * @return the best keys, best first
+	 */
+	public List<Candidate> findCandidates(String ciphertext, int count) {
+		return findCandidates(ciphertext, count, 0, KeySpace.size(rotors));
+	}
+
+	/**
+	 * Finds the best keys of the given cipher text among the keys with the numbers from (inclusive) to (exclusive),
+	 * in the order AAA, AAB... This allows to split the key space among several analyzers.
+	 * @param ciphertext the encrypted text
+	 * @param count the maximum amount of keys to find
+	 * @param from the number of the first key
+	 * @param to the number after the last key
+	 * @return the best keys of the range, best first
+	 */
+	public List<Candidate> findCandidates(String ciphertext, int count, long from, long to) {
+		if (from < 0 || from > to || to > KeySpace.size(rotors))
+			throw new IllegalArgumentException("Invalid key range [" + from + ", " + to + ")");
+		final TopKeyCollector[] collectors = collectorsOf(1, cascade.firstSurvivors(count));
+		final long start = System.nanoTime();
+		search(symbolsOf(Collections.singletonList(ciphertext)), from, to, collectors, null);
+		final List<StageStatistics> statistics = new ArrayList<>();
+		final List<Candidate> candidates =
+				rescore(ciphertext, collectors[0], count, to - from, System.nanoTime() - start, statistics);
+		this.statistics = statistics;
+		return candidates;
+	}
+
+	/**
+	 * Starts to search the key of the given cipher text in the background.
+	 * @param ciphertext the encrypted text
+	 * @param timeLimit the time in milliseconds after which the attack ends with the best key found so far,
+	 * 0 for no limit
+	 * @param listener receives the progress of the attack every {@value #PROGRESS_INTERVAL}ms and when it has ended,
+	 * may be null
+	 * @return the running attack
+	 */
+	public Attack attack(final String ciphertext, final long timeLimit, final ProgressListener listener) {
+		return attack(ciphertext, timeLimit, listener, null, null);
+	}
+
+	/**
+	 * Starts to search the key of the given cipher text in the background and checkpoints the search,
+	 * so that it can continue after the process has ended.
+	 * The checkpoint is written every {@value #CHECKPOINT_INTERVAL}ms and when the attack ends, also if it was
+	 * cancelled or reached its time limit.
+	 * @param ciphertext the encrypted text
+	 * @param timeLimit the time in milliseconds after which the attack ends with the best key found so far,
+	 * 0 for no limit
+	 * @param listener receives the progress of the attack every {@value #PROGRESS_INTERVAL}ms and when it has ended,
+	 * may be null
+	 * @param checkpoint the file to write the checkpoints to, null to not checkpoint
+	 * @param resume whether to continue the search of the checkpoint if the file exists
+	 * @return the running attack
+	 * @throws IOException if the checkpoint to resume from could not be read
+	 */
+	public Attack attack(final String ciphertext, final long timeLimit, final ProgressListener listener,
+						 final File checkpoint, final boolean resume) throws IOException {
+		final Checkpoint state = checkpoint != null && resume && checkpoint.exists()
+				? Checkpoint.read(checkpoint) : null;
+		if (state != null && (state.hasReflector() != machine instanceof ReflectorEnigma
+				|| state.getRotors() != rotors || !state.getCiphertext().equals(ciphertext)))
+			throw new IllegalArgumentException("Checkpoint " + checkpoint + " belongs to another attack");
+		return attack(ciphertext, timeLimit, listener, checkpoint, state);
+	}
+
+	/**
+	 * @param state the checkpoint to continue from, null to start with the first key
+	 */
+	private Attack attack(final String ciphertext, final long timeLimit, final ProgressListener listener,
+						  final File checkpoint, final Checkpoint state) {
+		final byte[][] symbols = symbolsOf(Collections.singletonList(ciphertext));
+		final TopKeyCollector[] collectors = collectorsOf(1, cascade.firstSurvivors(1));
+		final Attack attack = new Attack(rotors, collectors[0], timeLimit);
+		long frontier = 0;
+		if (state != null) {
+			final long[] keys = state.getKeys();
+			final double[] scores = state.getScores();
+			for (int i = 0; i < keys.length; i++)
+				collectors[0].offer(keys[i], scores[i]);
+			frontier = state.getFrontier();
+			attack.resumed(frontier);
+		}
+		final long from = frontier;
+		attack.start(new Runnable() {
+			@Override
+			public void run() {
+				final long start = System.nanoTime();
+				if (checkpoint == null)
+					search(symbols, from, KeySpace.size(rotors), collectors, attack);
+				else
+					search(ciphertext, symbols, from, collectors[0], attack, checkpoint);
+				if (attack.isCancelled())
+					return;
+				final List<StageStatistics> statistics = new ArrayList<>();
+				final List<Candidate> candidates = rescore(ciphertext, collectors[0], 1,
+						attack.getProgress().getKeysTried() - from, System.nanoTime() - start, statistics);
+				EnigmaAnalyzer.this.statistics = statistics;
+				attack.rescored(candidates.isEmpty() ? null : candidates.get(0).getKey());
+			}
+		}, listener, PROGRESS_INTERVAL);
+		return attack;
+	}
+
+	/**
+	 * Searches the keys from the frontier on in segments. Once a segment is complete, all keys before its end have
+	 * been tried and the frontier of the next checkpoint moves on.
+	 */
+	private void search(final String ciphertext, final byte[][] symbols, long frontier,
+						final TopKeyCollector collector, final Attack attack, final File checkpoint) {
+		final long size = KeySpace.size(rotors);
+		final long segmentSize = Math.max(1, Math.min(MAX_SEGMENT_SIZE, size / ALPHABET_SIZE));
+		// the best keys before the frontier, the collector also holds keys of an incomplete segment
+		long[] keys = new long[collector.getCapacity()];
+		double[] scores = new double[collector.getCapacity()];
+		int found = collector.rank(keys, scores);
+		long lastCheckpoint = System.currentTimeMillis();
+		while (frontier < size && !attack.isStopped()) {
+			final long end = Math.min(frontier + segmentSize, size);
+			search(symbols, frontier, end, new TopKeyCollector[]{collector}, attack);
+			if (attack.isStopped())
+				break;
+			frontier = end;
+			found = collector.rank(keys, scores);
+			if (System.currentTimeMillis() - lastCheckpoint >= CHECKPOINT_INTERVAL) {
+				writeCheckpoint(checkpoint, ciphertext, frontier, keys, scores, found);
+				lastCheckpoint = System.currentTimeMillis();
+			}
+		}
+		writeCheckpoint(checkpoint, ciphertext, frontier, keys, scores, found);
+	}
+
+	private void writeCheckpoint(final File file, final String ciphertext, final long frontier, final long[] keys,
+								 final double[] scores, final int found) {
+		try {
+			new Checkpoint(machine instanceof ReflectorEnigma, rotors, ciphertext, frontier,
+					Arrays.copyOf(keys, found), Arrays.copyOf(scores, found)).write(file);
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not write checkpoint " + file, e);
+		}
+	}
+
+	/**
+	 * Attempts to find the keys of many ciphertexts at once.
+	 * The keystream of every key is computed only once and then applied to all ciphertexts.
+	 * @param ciphertexts the encrypted texts
+	 * @return the key of each ciphertext in the same order, null where no key could be found
+	 */
+	@Override
+	public List<String> findKeys(final List<String> ciphertexts) {
+		final TopKeyCollector[] collectors = collectorsOf(ciphertexts.size(), cascade.firstSurvivors(1));
+		final long start = System.nanoTime();
+		search(symbolsOf(ciphertexts), 0, KeySpace.size(rotors), collectors, null);
+		final long nanos = System.nanoTime() - start;
+		final List<String> keys = new ArrayList<>(ciphertexts.size());
+		final List<StageStatistics> statistics = new ArrayList<>();
+		for (int c = 0; c < collectors.length; c++) {
+			// the keystreams of the first stage are shared, so is its time
+			final List<StageStatistics> ciphertextStatistics = new ArrayList<>();
+			final List<Candidate> candidates = rescore(ciphertexts.get(c), collectors[c], 1, KeySpace.size(rotors),
+					c == 0 ? nanos : 0, ciphertextStatistics);
+			keys.add(candidates.isEmpty() ? null : candidates.get(0).getKey());
+			for (int s = 0; s < ciphertextStatistics.size(); s++) {
+				if (c == 0)
+					statistics.add(ciphertextStatistics.get(s));
+				else
+					statistics.set(s, statistics.get(s).plus(ciphertextStatistics.get(s)));
+			}
+		}
+		this.statistics = statistics;
+		return keys;
+	}
+
+	/**
+	 * Rates the survivors of the first stage with the later stages of the cascade.
+	 * @param ciphertext the encrypted text
+	 * @param collector holds the survivors of the first stage
+	 * @param count the maximum amount of keys to find
+	 * @param rated the amount of keys that the first stage has rated
+	 * @param nanos the time that the first stage took
+	 * @param statistics receives the statistics of every stage
+	 * @return the best keys of the last stage, best first
+	 */
+	private List<Candidate> rescore(final String ciphertext, final TopKeyCollector collector, final int count,
+									final long rated, final long nanos, final List<StageStatistics> statistics) {
+		final List<ScoringCascade.Stage> stages = cascade.getStages();
+		final long[] keys = new long[collector.getCapacity()];
+		final double[] scores = new double[collector.getCapacity()];
+		int found = collector.rank(keys, scores);
+		statistics.add(new StageStatistics(nameOf(stages.get(0)), rated, found, nanos));
+		final byte[] symbols = symbolsOf(ciphertext);
+		final int[] positions = new int[rotors];
+		final byte[] offsets = new byte[symbols.length];
+		final byte[] plaintext = new byte[symbols.length];
+		for (int s = 1; s < stages.size() && found > 0; s++) {
+			final long start = System.nanoTime();
+			final ScoringCascade.Stage stage = stages.get(s);
+			final TextScore score = stage.getScore();
+			final int end = stage.end(symbols.length);
+			final TopKeyCollector survivors = new TopKeyCollector(Math.min(cascade.survivors(s, count), found), 1);
+			for (int i = 0; i < found; i++) {
+				KeySpace.positionsOf(keys[i], positions);
+				machine.keystream(positions, symbols.length, offsets);
+				for (int j = 0; j < symbols.length; j++)
+					plaintext[j] = decryption[offsets[j] * ALPHABET_SIZE + symbols[j]];
+				survivors.offer(keys[i], score instanceof BoundedTextScore
+						? ((BoundedTextScore) score).valueOf(plaintext, 0, end, survivors.threshold())
+						: score.valueOf(plaintext, 0, end));
+			}
+			final int stageRated = found;
+			found = survivors.rank(keys, scores);
+			statistics.add(new StageStatistics(nameOf(stage), stageRated, found, System.nanoTime() - start));
+		}
+		found = Math.min(found, count);
+		final List<Candidate> candidates = new ArrayList<>(found);
+		for (int i = 0; i < found; i++)
+			candidates.add(new Candidate(KeySpace.keyOf(keys[i], rotors), scores[i]));
+		return candidates;
+	}
+
+	private static String nameOf(final ScoringCascade.Stage stage) {
+		return stage.getScore().getClass().getSimpleName();
+	}
+
+	private static byte[][] symbolsOf(final List<String> ciphertexts) {
+		final byte[][] symbols = new byte[ciphertexts.size()][];
+		for (int c = 0; c < symbols.length; c++) {
+			final String ciphertext = ciphertexts.get(c);
+			if (!StringUtils.isAllUpperCase(ciphertext))
+				throw new IllegalArgumentException("Ciphertext is not all upper-case");
+			symbols[c] = symbolsOf(ciphertext);
+		}
+		return symbols;
+	}
+
+	private TopKeyCollector[] collectorsOf(final int ciphertexts, final int count) {
+		final TopKeyCollector[] collectors = new TopKeyCollector[ciphertexts];
+		for (int c = 0; c < ciphertexts; c++)
+			collectors[c] = new TopKeyCollector(count, threads);
+		return collectors;
+	}
+
+	/**
+	 * Searches the keys with the numbers from (inclusive) to (exclusive) for all ciphertexts.
+	 * @param ciphertexts the encrypted texts as indices in the alphabet
+	 * @param from the number of the first key
+	 * @param to the number after the last key
+	 * @param collectors receive the keys and their scores, one per ciphertext
+	 * @param attack controls and observes the search, may be null
+	 */
+	private void search(final byte[][] ciphertexts, final long from, final long to,
+						final TopKeyCollector[] collectors, final Attack attack) {
 		// Search all possible keys by utilizing maths instead of nested for loops
 		// (this also allows a variable amount of rotors).
 		// The total amount of possible keys is ALPHABET_SIZE^rotors, our max value.
 		// Each integer value from zero to this max value represents one unique key
 		// that can be determined by consecutively performing modulo operations on the integer value
 		// and "cutting off" the just used bits with a division.
-		final int possibleKeys = (int) Math.pow(ALPHABET_SIZE, rotors);
-		for (int num = 0; num < possibleKeys; num++) {
-			String key = "";
-			for (int k = 0; k < rotors; k++) {
-				final int index = (int) (num / Math.pow(ALPHABET_SIZE, k)) % ALPHABET_SIZE;
-				key = String.valueOf(Enigma.ALPHABET[index]) + key; // make order AAA, AAB... instead of AAA, BAA...
+		if (pool == null) {
+			search(machine, ciphertexts, from, to, collectors, attack);
+		} else {
+			pool.invoke(new KeySearchTask(ciphertexts, from, to, collectors, attack));
+		}
+	}
+
+	/**
+	 * Searches the keys with the numbers from (inclusive) to (exclusive).
+	 * No objects are created per key.
+	 * @param machine the machine to compute keystreams with
+	 * @param ciphertexts the encrypted texts as indices in the alphabet
+	 * @param from the number of the first key
+	 * @param to the number after the last key
+	 * @param collectors receive the keys and their scores, one per ciphertext
+	 * @param attack controls and observes the search, may be null
+	 */
+	private void search(final Enigma machine, final byte[][] ciphertexts, final long from, final long to,
+						final TopKeyCollector[] collectors, final Attack attack) {
+		int length = 0;
+		for (byte[] ciphertext : ciphertexts)
+			length = Math.max(length, ciphertext.length);
+		final int[] positions = new int[rotors];
+		final byte[] offsets = new byte[length];
+		final byte[] plaintext = new byte[length];
+		final int[] ends = new int[ciphertexts.length];
+		for (int c = 0; c < ciphertexts.length; c++)
+			ends[c] = cascade.getStages().get(0).end(ciphertexts[c].length);
+		for (long block = from; block < to; block += BLOCK_SIZE) {
+			if (attack != null && attack.isStopped())
+				return;
+			final long end = Math.min(block + BLOCK_SIZE, to);
+			for (long num = block; num < end; num++) {
+				KeySpace.positionsOf(num, positions);
+				machine.keystream(positions, length, offsets);
+				for (int c = 0; c < ciphertexts.length; c++) {
+					final byte[] ciphertext = ciphertexts[c];
+					for (int i = 0; i < ciphertext.length; i++)
+						plaintext[i] = decryption[offsets[i] * ALPHABET_SIZE + ciphertext[i]];
+					// save some score computing time by validating the plaintext
+					if (!isEncodedProperly(ciphertext, plaintext))
+						continue;
+					final double score = boundedScore != null
+							? boundedScore.valueOf(plaintext, 0, ends[c], collectors[c].threshold())
+							: textScore.valueOf(plaintext, 0, ends[c]);
+					collectors[c].offer(num, score);
+				}
 			}
-			final String plaintext = machine.decrypt(ciphertext, key);
-			// save some score computing time by validating the plaintext
-			if (!isEncodedProperly(ciphertext, plaintext))
-				continue;
-			final double score = textScore.valueOf(plaintext);
-			bestKey.updateIfBetter(key, score);
+			if (attack != null)
+				attack.tried(end - block);
 		}
-		return bestKey.getBestKey();
 	}
 
-	private boolean isEncodedProperly(final String ciphertext, final String plaintext) {
-		return ciphertext.length() == plaintext.length()
-				&& !containsWhitespace(ciphertext, plaintext)
-				&& isAnyCharacterEncodedToSame(ciphertext, plaintext);
+	/**
+	 * @param text the upper-case text
+	 * @return the characters of the text as indices in the alphabet
+	 */
+	static byte[] symbolsOf(final String text) {
+		final byte[] symbols = new byte[text.length()];
+		for (int i = 0; i < symbols.length; i++) {
+			final char c = text.charAt(i);
+			if (c < 'A' || c > 'Z')
+				throw new IllegalArgumentException("Text contains the invalid character " + c);
+			symbols[i] = (byte) (c - 'A');
+		}
+		return symbols;
 	}
 
-	private boolean containsWhitespace(final String ciphertext, final String plaintext) {
-		final String[] texts = {ciphertext, plaintext};
-		for (String text : texts) {
-			Matcher matcher = whitespacePattern.matcher(text);
-			if (matcher.find())
+	/**
+	 * @return true if at least one character was encoded to another one
+	 */
+	private boolean isEncodedProperly(final byte[] ciphertext, final byte[] plaintext) { // plaintext may be longer
+		for (int i = 0; i < ciphertext.length; i++) {
+			if (ciphertext[i] != plaintext[i])
 				return true;
 		}
 		return false;
 	}
 
-	private boolean isAnyCharacterEncodedToSame(final String ciphertext, final String plaintext) {
-		for (int i = 0; i < ciphertext.length(); i++) {
-			if (ciphertext.charAt(i) != plaintext.charAt(i))
-				return true;
+	/**
+	 * Splits its key range in halves until it is small enough to be searched with a machine of its own.
+	 */
+	private class KeySearchTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final byte[][] ciphertexts;
+		private final long from, to;
+		private final TopKeyCollector[] collectors;
+		private final Attack attack;
+
+		private KeySearchTask(final byte[][] ciphertexts, final long from, final long to,
+							  final TopKeyCollector[] collectors, final Attack attack) {
+			this.ciphertexts = ciphertexts;
+			this.from = from;
+			this.to = to;
+			this.collectors = collectors;
+			this.attack = attack;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= CHUNK_SIZE) {
+				search(machine, ciphertexts, from, to, collectors, attack);
+				return;
+			}
+			final long middle = from + (to - from) / 2;
+			invokeAll(new KeySearchTask(ciphertexts, from, middle, collectors, attack),
+					new KeySearchTask(ciphertexts, middle, to, collectors, attack));
 		}
-		return false;
 	}
 }
@@ -0,0 +1,86 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+/**
+ * In-place radix-2 fast Fourier transform of a fixed size.
+ * The complex values are given as separate arrays of their real and imaginary parts.
+ */
+final class FourierTransform {
+	private final int size;
+	/** Index of each element after the bit-reversal permutation */
+	private final int[] reversed;
+	/** Cosine and sine of the twiddle factors e^(-2 pi i k / size) for k < size / 2 */
+	private final double[] cos, sin;
+
+	/**
+	 * @param size the amount of values to transform, a power of two
+	 */
+	FourierTransform(final int size) {
+		if (size <= 0 || Integer.bitCount(size) != 1)
+			throw new IllegalArgumentException("Size must be a power of two");
+		this.size = size;
+		this.reversed = new int[size];
+		final int bits = Integer.numberOfTrailingZeros(size);
+		for (int i = 0; i < size; i++)
+			reversed[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (Integer.SIZE - bits);
+		this.cos = new double[size / 2];
+		this.sin = new double[size / 2];
+		for (int k = 0; k < size / 2; k++) {
+			cos[k] = Math.cos(2 * Math.PI * k / size);
+			sin[k] = -Math.sin(2 * Math.PI * k / size);
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Replaces the values by their discrete Fourier transform.
+	 * @param re the real parts
+	 * @param im the imaginary parts
+	 */
+	void transform(final double[] re, final double[] im) {
+		for (int i = 0; i < size; i++) {
+			final int j = reversed[i];
+			if (i < j) {
+				double t = re[i];
+				re[i] = re[j];
+				re[j] = t;
+				t = im[i];
+				im[i] = im[j];
+				im[j] = t;
+			}
+		}
+		for (int half = 1; half < size; half <<= 1) {
+			final int stride = size / (half << 1);
+			for (int block = 0; block < size; block += half << 1) {
+				for (int k = 0; k < half; k++) {
+					final int a = block + k, b = a + half;
+					final double wr = cos[k * stride], wi = sin[k * stride];
+					final double tr = re[b] * wr - im[b] * wi;
+					final double ti = re[b] * wi + im[b] * wr;
+					re[b] = re[a] - tr;
+					im[b] = im[a] - ti;
+					re[a] += tr;
+					im[a] += ti;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Replaces the values by their inverse discrete Fourier transform.
+	 * @param re the real parts
+	 * @param im the imaginary parts
+	 */
+	void inverse(final double[] re, final double[] im) {
+		for (int i = 0; i < size; i++)
+			im[i] = -im[i];
+		transform(re, im);
+		final double scale = 1.0 / size;
+		for (int i = 0; i < size; i++) {
+			re[i] *= scale;
+			im[i] *= -scale;
+		}
+	}
+}
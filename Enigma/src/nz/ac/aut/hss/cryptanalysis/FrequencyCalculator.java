@@ -4,11 +4,10 @@ import nz.ac.aut.hss.util.FileIO;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.StringTokenizer;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * @author Martin Schrimpf
@@ -18,33 +17,58 @@ public abstract class FrequencyCalculator implements TextScore {
 	private final boolean hasHeader;
 	private final String valueDelimiter;
 
-	private final Map<String, Long> frequencies;
-	private final Pattern pattern;
+	private final AhoCorasickMatcher matcher;
+	/** Per-thread buffer for texts converted to indices in the alphabet */
+	private final ThreadLocal<byte[]> symbols = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[0];
+		}
+	};
 
 	protected FrequencyCalculator(final String file, final boolean hasHeader, final String valueDelimiter)
 			throws IOException {
 		this.hasHeader = hasHeader;
 		this.valueDelimiter = valueDelimiter;
-		final InputStream resource = getClass().getClassLoader().getResourceAsStream(file);
-		if (resource == null)
-			throw new IllegalStateException(file + " does not exist");
-		this.frequencies = loadFrequencies(resource);
-		this.pattern = buildPattern(this.frequencies);
+		final ByteBuffer table = BinaryTables.load(BinaryTables.binaryName(file));
+		if (table != null) {
+			this.matcher = BinaryTables.readWords(table);
+		} else {
+			final InputStream resource = getClass().getClassLoader().getResourceAsStream(file);
+			if (resource == null)
+				throw new IllegalStateException(file + " does not exist");
+			this.matcher = buildMatcher(loadFrequencies(resource));
+		}
 	}
 
+	/**
+	 * Sums up the frequencies of all words found in the text.
+	 * Words are matched from left to right without overlaps.
+	 */
 	public double valueOf(String text) {
 		text = text.toLowerCase();
-		double sum = 0;
-		Matcher matcher = pattern.matcher(text);
-		while (matcher.find()) {
-			String match = matcher.group();
-			long value = frequencies.get(match);
-			sum += value;
+		byte[] buffer = symbols.get();
+		if (buffer.length < text.length()) {
+			buffer = new byte[text.length()];
+			symbols.set(buffer);
 		}
-		return sum;
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			buffer[i] = c >= 'a' && c <= 'z' ? (byte) (c - 'a') : -1;
+		}
+		return matcher.sumOfMatches(buffer, 0, text.length());
+	}
+
+	public double valueOf(final byte[] text, final int from, final int to) {
+		return matcher.sumOfMatches(text, from, to);
 	}
 
 	protected Map<String, Long> loadFrequencies(final InputStream inputStream) throws IOException {
+		return loadFrequencies(inputStream, hasHeader, valueDelimiter);
+	}
+
+	static Map<String, Long> loadFrequencies(final InputStream inputStream, final boolean hasHeader,
+											 final String valueDelimiter) throws IOException {
 		/* first run: read file contents into map */
 		final String fileContents = FileIO.read(inputStream);
 		final StringTokenizer tokenizer = new StringTokenizer(fileContents, FileIO.LINE_SEPARATOR);
@@ -62,17 +86,19 @@ public abstract class FrequencyCalculator implements TextScore {
 		return map;
 	}
 
-	protected Pattern buildPattern(final Map<String, ?> frequencies) {
-		String regex = "";
-		boolean first = true;
-		for (Map.Entry<String, ?> entry : frequencies.entrySet()) {
-			if (first) {
-				first = false;
-			} else {
-				regex += "|";
-			}
-			regex += entry.getKey(); // no need to quote, should be alphanumeric only
+	/**
+	 * Builds the matcher of all words. The words are ordered like the alternation of a regular expression built from
+	 * the map would be.
+	 */
+	private AhoCorasickMatcher buildMatcher(final Map<String, Long> frequencies) {
+		final String[] words = new String[frequencies.size()];
+		final long[] values = new long[frequencies.size()];
+		int i = 0;
+		for (Map.Entry<String, Long> entry : frequencies.entrySet()) {
+			words[i] = entry.getKey();
+			values[i] = entry.getValue();
+			i++;
 		}
-		return Pattern.compile(regex);
+		return new AhoCorasickMatcher(words, values);
 	}
 }
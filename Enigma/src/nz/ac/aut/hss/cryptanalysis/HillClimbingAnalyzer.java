@@ -0,0 +1,188 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+import nz.ac.aut.hss.encrypt.Enigma;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Searches the key with randomly restarted hill-climbing instead of trying every key.
+ * <p>
+ * Only the first rotors move while a short text is encrypted, the others add a constant offset to every character.
+ * A step therefore changes the positions of two rotors at once, which allows to find the position of a moving
+ * rotor together with the offset of the resting rotors. Each climb takes the best step until no step improves the
+ * quadgram score anymore. Climbs are restarted from random keys on all threads until the budget is used up.
+ * The initial key of each climb depends only on the seed and the number of the climb. The best key of each climb is
+ * kept by its number and of equally scored keys, the one of the first climb wins, so an analyzer with a fixed seed
+ * and no time limit finds the same key on every run, no matter which thread runs which climb.
+ * <p>
+ * The resulting key decrypts the ciphertext like the original key but is not necessarily equal to it,
+ * since the positions of the resting rotors can add up to the same offset in many ways.
+ */
+public class HillClimbingAnalyzer implements CryptAnalyzer {
+	private static final int ALPHABET_SIZE = Enigma.ALPHABET.length;
+	private final Enigma machine;
+	private final int rotors;
+	private final int threads;
+	private final int restarts;
+	private final long timeLimit;
+	private final long seed;
+	private final BoundedTextScore textScore;
+
+	/**
+	 * Climbs from a randomly seeded sequence of initial keys.
+	 * @param machine the machine to attack
+	 * @param threads the amount of threads to climb on
+	 * @param restarts the total amount of climbs
+	 * @param timeLimit the time in milliseconds after which no further climbs are started, 0 for no limit
+	 * @throws IOException if the quadgram statistics could not be loaded
+	 */
+	public HillClimbingAnalyzer(final Enigma machine, final int threads, final int restarts, final long timeLimit)
+			throws IOException {
+		this(machine, threads, restarts, timeLimit, new Random().nextLong());
+	}
+
+	/**
+	 * @param machine the machine to attack
+	 * @param threads the amount of threads to climb on
+	 * @param restarts the total amount of climbs
+	 * @param timeLimit the time in milliseconds after which no further climbs are started, 0 for no limit
+	 * @param seed the seed of the initial keys
+	 * @throws IOException if the quadgram statistics could not be loaded
+	 */
+	public HillClimbingAnalyzer(final Enigma machine, final int threads, final int restarts, final long timeLimit,
+								final long seed) throws IOException {
+		if (threads <= 0)
+			throw new IllegalArgumentException("Amount of threads must be positive");
+		if (restarts <= 0)
+			throw new IllegalArgumentException("Amount of restarts must be positive");
+		this.machine = machine;
+		this.rotors = machine.getRotors();
+		this.threads = threads;
+		this.restarts = restarts;
+		this.timeLimit = timeLimit;
+		this.seed = seed;
+		this.textScore = ScoringTables.quadgrams();
+	}
+
+	/**
+	 * Attempts to find a key of the given cipher text.
+	 * @param ciphertext the encrypted text
+	 * @return a key that decrypts the given ciphertext to the most english text found
+	 */
+	@Override
+	public String findKey(final String ciphertext) {
+		if (!StringUtils.isAllUpperCase(ciphertext))
+			throw new IllegalArgumentException("Ciphertext is not all upper-case");
+		final byte[] symbols = EnigmaAnalyzer.symbolsOf(ciphertext);
+		final long deadline = timeLimit > 0 ? System.currentTimeMillis() + timeLimit : Long.MAX_VALUE;
+		final AtomicInteger remainingRestarts = new AtomicInteger(restarts);
+		// best key and score of each climb, null for climbs that were not started before the deadline
+		final String[] keys = new String[restarts];
+		final double[] scores = new double[restarts];
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			final List<Callable<Void>> climbers = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				climbers.add(new Callable<Void>() {
+					@Override
+					public Void call() {
+						climb(symbols, remainingRestarts, deadline, keys, scores);
+						return null;
+					}
+				});
+			}
+			for (Future<Void> result : executor.invokeAll(climbers))
+				result.get();
+			final BestKeyStore bestKey = new BestKeyStore();
+			for (int climb = 0; climb < restarts; climb++) {
+				if (keys[climb] != null)
+					bestKey.updateIfBetter(keys[climb], scores[climb]);
+			}
+			return bestKey.getBestKey();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while climbing", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Climb failed", e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Override
+	public List<String> findKeys(final List<String> ciphertexts) {
+		final List<String> keys = new ArrayList<>(ciphertexts.size());
+		for (String ciphertext : ciphertexts)
+			keys.add(findKey(ciphertext));
+		return keys;
+	}
+
+	/**
+	 * Climbs from random keys until there are no restarts or no time left.
+	 * @param keys receives the best key of each climb by the number of the climb
+	 * @param scores receives the score of the best key of each climb
+	 */
+	private void climb(final byte[] ciphertext, final AtomicInteger remainingRestarts, final long deadline,
+					   final String[] keys, final double[] scores) {
+		final Random random = new Random();
+		final byte[] plaintext = new byte[ciphertext.length];
+		final int[] positions = new int[rotors], best = new int[rotors];
+		int restart;
+		while ((restart = remainingRestarts.getAndDecrement()) > 0 && System.currentTimeMillis() < deadline) {
+			random.setSeed(seed + restart);
+			for (int i = 0; i < rotors; i++)
+				positions[i] = random.nextInt(ALPHABET_SIZE);
+			double score = score(machine, ciphertext, positions, plaintext, Double.NEGATIVE_INFINITY);
+			boolean improved = true;
+			while (improved && System.currentTimeMillis() < deadline) {
+				improved = false;
+				System.arraycopy(positions, 0, best, 0, rotors);
+				for (int i = 0; i < rotors; i++) {
+					for (int j = i + 1; j < rotors; j++) {
+						final int originalI = positions[i], originalJ = positions[j];
+						for (int p = 0; p < ALPHABET_SIZE; p++) {
+							positions[i] = p;
+							for (int q = 0; q < ALPHABET_SIZE; q++) {
+								positions[j] = q;
+								final double value = score(machine, ciphertext, positions, plaintext, score);
+								if (value > score) {
+									score = value;
+									System.arraycopy(positions, 0, best, 0, rotors);
+									improved = true;
+								}
+							}
+						}
+						positions[i] = originalI;
+						positions[j] = originalJ;
+					}
+				}
+				System.arraycopy(best, 0, positions, 0, rotors);
+			}
+			keys[restarts - restart] = keyOf(positions);
+			scores[restarts - restart] = score;
+		}
+	}
+
+	private double score(final Enigma machine, final byte[] ciphertext, final int[] positions, final byte[] plaintext,
+						 final double minimum) {
+		machine.decrypt(ciphertext, ciphertext.length, positions, plaintext);
+		return textScore.valueOf(plaintext, 0, plaintext.length, minimum);
+	}
+
+	private String keyOf(final int[] positions) {
+		final char[] key = new char[positions.length];
+		for (int i = 0; i < positions.length; i++)
+			key[i] = Enigma.ALPHABET[positions[i]];
+		return new String(key);
+	}
+}
@@ -0,0 +1,80 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+import nz.ac.aut.hss.encrypt.Enigma;
+
+/**
+ * Numbers the keys of an enigma machine.
+ * <p>
+ * The analyzers enumerate keys by their number in the order AAA, AAB, AAC... so the first character of the key is
+ * the most significant digit.
+ * The rotor state on the other hand counts like an odometer with the first rotor as the least significant digit,
+ * so the state after <code>t</code> characters is simply the initial state plus <code>t</code>
+ * (modulo the amount of keys).
+ */
+final class KeySpace {
+	private static final int ALPHABET_SIZE = Enigma.ALPHABET.length;
+
+	private KeySpace() {
+	}
+
+	/**
+	 * @param rotors the amount of rotors
+	 * @return the amount of possible keys
+	 */
+	static long size(final int rotors) {
+		long size = 1;
+		for (int i = 0; i < rotors; i++)
+			size *= ALPHABET_SIZE;
+		return size;
+	}
+
+	/**
+	 * @param num the number of the key
+	 * @param rotors the amount of rotors
+	 * @return the key with the given number
+	 */
+	static String keyOf(long num, final int rotors) {
+		final char[] key = new char[rotors];
+		for (int k = rotors - 1; k >= 0; k--) { // make order AAA, AAB... instead of AAA, BAA...
+			key[k] = Enigma.ALPHABET[(int) (num % ALPHABET_SIZE)];
+			num /= ALPHABET_SIZE;
+		}
+		return new String(key);
+	}
+
+	/**
+	 * @param key the key consisting of upper-case alpha characters only
+	 * @return the number of the key
+	 */
+	static long numberOf(final String key) {
+		long num = 0;
+		for (int k = 0; k < key.length(); k++)
+			num = num * ALPHABET_SIZE + key.charAt(k) - 'A';
+		return num;
+	}
+
+	/**
+	 * @param num the number of the key
+	 * @param positions receives the initial position of each rotor, its length is the amount of rotors
+	 */
+	static void positionsOf(long num, final int[] positions) {
+		for (int k = positions.length - 1; k >= 0; k--) {
+			positions[k] = (int) (num % ALPHABET_SIZE);
+			num /= ALPHABET_SIZE;
+		}
+	}
+
+	/**
+	 * @param num the number of the key
+	 * @param rotors the amount of rotors
+	 * @return the rotor state that the key with the given number sets
+	 */
+	static long stateOf(long num, final int rotors) {
+		long state = 0;
+		for (int k = 0; k < rotors; k++) {
+			state = state * ALPHABET_SIZE + num % ALPHABET_SIZE;
+			num /= ALPHABET_SIZE;
+		}
+		return state;
+	}
+}
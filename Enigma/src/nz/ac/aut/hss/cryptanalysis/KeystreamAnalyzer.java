@@ -0,0 +1,70 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+import nz.ac.aut.hss.encrypt.Enigma;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Searches all keys like the {@link EnigmaAnalyzer} but decrypts with a pre-computed {@link KeystreamTable}
+ * instead of the machine.
+ * Every character is decrypted with one lookup of its offset and one lookup in a table that maps offset and
+ * ciphertext character to the plaintext character, which also covers the reflector of the
+ * {@link nz.ac.aut.hss.encrypt.ReflectorEnigma}.
+ */
+public class KeystreamAnalyzer implements CryptAnalyzer {
+	private static final int ALPHABET_SIZE = Enigma.ALPHABET.length;
+	private final TextScore textScore;
+	private final int rotors;
+	private final KeystreamTable keystream;
+	/** Plaintext character for every offset (major) and ciphertext character (minor) */
+	private final byte[] decryption;
+
+	public KeystreamAnalyzer(final Enigma machine) throws IOException {
+		this.rotors = machine.getRotors();
+		this.textScore = ScoringTables.bigramWords();
+		this.keystream = new KeystreamTable(machine);
+		this.decryption = machine.getDecryptionTable();
+	}
+
+	/**
+	 * Attempts to find the key of the given cipher text.
+	 * @param ciphertext the encrypted text
+	 * @return the key used to generate the given ciphertext or null if no key could be found
+	 */
+	@Override
+	public String findKey(final String ciphertext) {
+		if (!StringUtils.isAllUpperCase(ciphertext))
+			throw new IllegalArgumentException("Ciphertext is not all upper-case");
+		final byte[] symbols = EnigmaAnalyzer.symbolsOf(ciphertext);
+		final int length = symbols.length;
+		final byte[] plaintext = new byte[length];
+		final BestKeyStore bestKey = new BestKeyStore();
+		final long possibleKeys = KeySpace.size(rotors);
+		for (long num = 0; num < possibleKeys; num++) {
+			final long state = KeySpace.stateOf(num, rotors);
+			boolean changed = false;
+			for (int i = 0; i < length; i++) {
+				plaintext[i] = decryption[keystream.offsetAt(state + i) * ALPHABET_SIZE + symbols[i]];
+				changed |= plaintext[i] != symbols[i];
+			}
+			// save some score computing time by skipping texts that were not encoded at all
+			if (!changed)
+				continue;
+			final double score = textScore.valueOf(plaintext, 0, length);
+			if (score > bestKey.getBestValue()) // only build the key if it is needed
+				bestKey.updateIfBetter(KeySpace.keyOf(num, rotors), score);
+		}
+		return bestKey.getBestKey();
+	}
+
+	@Override
+	public List<String> findKeys(final List<String> ciphertexts) {
+		final List<String> keys = new ArrayList<>(ciphertexts.size());
+		for (String ciphertext : ciphertexts)
+			keys.add(findKey(ciphertext));
+		return keys;
+	}
+}
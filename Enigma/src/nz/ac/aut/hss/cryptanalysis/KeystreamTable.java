@@ -0,0 +1,111 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+import nz.ac.aut.hss.encrypt.Enigma;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The offset sequence of all rotor states of a machine.
+ * <p>
+ * At every character, the machine adds the sum of all rotor offsets to the character and ticks the rotors like an
+ * odometer. The state after <code>t</code> characters of a key with state <code>s</code> is thus the state
+ * <code>s + t</code> and the keystream of every key is a window over this one sequence.
+ * <p>
+ * Tables of machines with {@value #MAPPED_ROTORS} or more rotors are written to a temporary file and memory-mapped.
+ * @see KeySpace
+ */
+public class KeystreamTable {
+	/** Minimum amount of rotors for which the table is memory-mapped */
+	public static final int MAPPED_ROTORS = 5;
+	private static final int ALPHABET_SIZE = Enigma.ALPHABET.length;
+	private static final int SEGMENT_BITS = 30;
+	private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+	private final long length;
+	/** Offsets if held in memory, null if mapped */
+	private final byte[] offsets;
+	/** Mapped offsets in segments of 2^SEGMENT_BITS, null if held in memory */
+	private final MappedByteBuffer[] segments;
+
+	/**
+	 * Builds the table of the given machine.
+	 * @param machine the machine
+	 * @throws IOException if the table could not be mapped
+	 */
+	public KeystreamTable(final Enigma machine) throws IOException {
+		final int rotors = machine.getRotors();
+		this.length = KeySpace.size(rotors);
+		if (rotors < MAPPED_ROTORS) {
+			this.offsets = new byte[(int) length];
+			this.segments = null;
+		} else {
+			this.offsets = null;
+			this.segments = map(length);
+		}
+		fill(machine);
+	}
+
+	/**
+	 * @return the amount of rotor states
+	 */
+	public long length() {
+		return length;
+	}
+
+	/**
+	 * @param state the rotor state, may exceed the amount of states by wrapping around
+	 * @return the sum of all rotor offsets in the given state, modulo the alphabet size
+	 */
+	public int offsetAt(long state) {
+		if (state >= length)
+			state %= length;
+		if (offsets != null)
+			return offsets[(int) state];
+		return segments[(int) (state >>> SEGMENT_BITS)].get((int) (state & SEGMENT_MASK));
+	}
+
+	private void fill(final Enigma machine) {
+		final int rotors = machine.getRotors();
+		final int[] positions = new int[rotors];
+		int offset = 0;
+		for (int i = 0; i < rotors; i++)
+			offset += machine.getRotorOffset(i, 0);
+		for (long state = 0; state < length; state++) {
+			put(state, (byte) (offset % ALPHABET_SIZE));
+			// tick, keeping the offset sum up to date
+			for (int i = 0; i < rotors; i++) {
+				offset -= machine.getRotorOffset(i, positions[i]);
+				positions[i] = (positions[i] + 1) % ALPHABET_SIZE;
+				offset += machine.getRotorOffset(i, positions[i]);
+				if (positions[i] != 0) // no full rotation, no need to move the next rotor
+					break;
+			}
+		}
+	}
+
+	private void put(final long state, final byte offset) {
+		if (offsets != null)
+			offsets[(int) state] = offset;
+		else
+			segments[(int) (state >>> SEGMENT_BITS)].put((int) (state & SEGMENT_MASK), offset);
+	}
+
+	private static MappedByteBuffer[] map(final long length) throws IOException {
+		final Path file = Files.createTempFile("keystream", ".tbl");
+		file.toFile().deleteOnExit();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			final MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((length - 1 >>> SEGMENT_BITS) + 1)];
+			for (int s = 0; s < segments.length; s++) {
+				final long position = (long) s << SEGMENT_BITS;
+				final long size = Math.min(SEGMENT_MASK + 1, length - position);
+				segments[s] = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+			}
+			return segments; // mappings stay valid after the channel is closed
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+/**
+ * Rates a text by the frequencies of its single letters in the english language, i.e. the log-probability of the
+ * text if every letter was drawn independently. The score is much cheaper but also much less precise than n-gram
+ * statistics, which makes it a good first stage of a {@link ScoringCascade}.
+ * @see <a href="http://practicalcryptography.com/cryptanalysis/letter-frequencies-various-languages/english-letter-frequencies/">
+ * English Letter Frequencies</a>
+ */
+public class LetterFrequencyScore implements BoundedTextScore {
+	/** Frequency of each letter in english texts in percent */
+	private static final double[] FREQUENCIES = {8.55, 1.60, 3.16, 3.87, 12.10, 2.18, 2.09, 4.96, 7.33, 0.22, 0.81,
+			4.21, 2.53, 7.17, 7.47, 2.07, 0.10, 6.33, 6.73, 8.94, 2.68, 1.06, 1.83, 0.19, 1.72, 0.11};
+	private final double[] logProbabilities = new double[FREQUENCIES.length];
+	private final double maxLogProbability;
+
+	public LetterFrequencyScore() {
+		double max = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < FREQUENCIES.length; i++) {
+			logProbabilities[i] = Math.log10(FREQUENCIES[i] / 100);
+			max = Math.max(max, logProbabilities[i]);
+		}
+		maxLogProbability = max;
+	}
+
+	/**
+	 * @param symbol the index of the letter in the alphabet
+	 * @return the log-probability of the letter
+	 */
+	double logProbabilityOf(final int symbol) {
+		return logProbabilities[symbol];
+	}
+
+	/**
+	 * Calculates the log-probability of the letters in the text, ignoring all other characters.
+	 */
+	@Override
+	public double valueOf(final String text) {
+		double score = 0;
+		for (int i = 0; i < text.length(); i++) {
+			final char c = Character.toLowerCase(text.charAt(i));
+			if (c >= 'a' && c <= 'z')
+				score += logProbabilities[c - 'a'];
+		}
+		return score;
+	}
+
+	@Override
+	public double valueOf(final byte[] text, final int from, final int to) {
+		double score = 0;
+		for (int i = from; i < to; i++)
+			score += logProbabilities[text[i]];
+		return score;
+	}
+
+	/**
+	 * Stops as soon as the score so far plus the best case for every remaining letter does not exceed the minimum.
+	 */
+	@Override
+	public double valueOf(final byte[] text, final int from, final int to, final double minimum) {
+		double score = 0;
+		for (int i = from; i < to; i++) {
+			score += logProbabilities[text[i]];
+			final double bestCase = score + (to - 1 - i) * maxLogProbability;
+			if (bestCase < minimum)
+				return bestCase;
+		}
+		return score;
+	}
+}
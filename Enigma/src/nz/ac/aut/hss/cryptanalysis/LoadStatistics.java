@@ -0,0 +1,46 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+/**
+ * How long a shared text score of the {@link ScoringTables} took to load and how often it was requested.
+ */
+public class LoadStatistics {
+	private final String score;
+	private final boolean loaded;
+	private final long nanos;
+	private final long requests;
+
+	/**
+	 * @param score the name of the text score
+	 * @param loaded whether the score has been loaded successfully
+	 * @param nanos the time spent loading the score
+	 * @param requests the amount of times the score was requested, including the one that loaded it
+	 */
+	public LoadStatistics(final String score, final boolean loaded, final long nanos, final long requests) {
+		this.score = score;
+		this.loaded = loaded;
+		this.nanos = nanos;
+		this.requests = requests;
+	}
+
+	public String getScore() {
+		return score;
+	}
+
+	public boolean isLoaded() {
+		return loaded;
+	}
+
+	public long getNanos() {
+		return nanos;
+	}
+
+	public long getRequests() {
+		return requests;
+	}
+
+	@Override
+	public String toString() {
+		return loaded ? String.format("%s: loaded in %dms, %d requests", score, nanos / 1000000, requests)
+				: String.format("%s: not loaded, %d requests", score, requests);
+	}
+}
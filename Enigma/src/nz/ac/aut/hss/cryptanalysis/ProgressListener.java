@@ -0,0 +1,13 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+/**
+ * Receives the progress of an attack.
+ * The listener is called from a thread of the attack, so it should return quickly.
+ */
+public interface ProgressListener {
+	/**
+	 * Called periodically while the attack is running and once more when it has ended.
+	 * @param progress the current progress
+	 */
+	public void progressed(AttackProgress progress);
+}
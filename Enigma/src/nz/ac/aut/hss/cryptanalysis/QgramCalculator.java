@@ -10,7 +10,11 @@ import java.io.IOException;
  * a Fitness Measure</a>
  */
 public class QgramCalculator extends FrequencyCalculator {
+	static final String FILE = "frequencies.txt";
+	static final boolean HAS_HEADER = false;
+	static final String VALUE_DELIMITER = "\t";
+
 	public QgramCalculator() throws IOException {
-		super("frequencies.txt", false, "\t");
+		super(FILE, HAS_HEADER, VALUE_DELIMITER);
 	}
 }
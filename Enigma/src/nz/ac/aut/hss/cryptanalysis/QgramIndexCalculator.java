@@ -5,6 +5,8 @@ import org.apache.commons.lang3.ArrayUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.StringTokenizer;
@@ -16,19 +18,33 @@ import java.util.StringTokenizer;
  * @see <a href="http://practicalcryptography.com/cryptanalysis/text-characterisation/quadgrams">Quadgram Statistics as
  * a Fitness Measure</a>
  */
-public class QgramIndexCalculator implements TextScore {
+public class QgramIndexCalculator implements BoundedTextScore {
+	static final String FILE = "qgram.txt";
 	private static final String VALUE_DELIMITER = ",";
+	/** Tolerance for rounding differences between the bound and the summed up score */
+	private static final double BOUND_TOLERANCE = 1e-6;
 	// qgram obtained from http://www.practicalcryptography.com/cryptanalysis/breaking-machine-ciphers/cryptanalysis-enigma/
-	private final float qgram[];
+	private final FloatBuffer qgram;
+	/** Best log-probability of any quadgram, i.e. the best case for every quadgram that is not scored yet */
+	private final float maxQgram;
 
+	/**
+	 * Maps the pre-compiled binary table if it exists and parses the text resource otherwise.
+	 * @throws IOException if the resource could not be read
+	 * @see BinaryTables
+	 */
 	public QgramIndexCalculator() throws IOException {
-		final String file = "qgram.txt";
-		final InputStream resource = getClass().getClassLoader().getResourceAsStream(file);
-		if (resource == null)
-			throw new IllegalStateException(file + " does not exist");
-		qgram = loadQgram(resource);
+		qgram = loadQgram();
+		float max = Float.NEGATIVE_INFINITY;
+		for (int i = 0; i < qgram.limit(); i++)
+			max = Math.max(max, qgram.get(i));
+		maxQgram = max;
 	}
 
+	/**
+	 * Calculates the log-probability of the text. The higher the score, the more likely the text is english.
+	 */
+	@Override
 	public double valueOf(String text) {
 		final char[] charText = text.toCharArray();
 		int temp[] = new int[4];
@@ -39,13 +55,69 @@ public class QgramIndexCalculator implements TextScore {
 			temp[2] = charText[i + 2] - 'A';
 			temp[3] = charText[i + 3] - 'A';
 			final int index = 17576 * temp[0] + 676 * temp[1] + 26 * temp[2] + temp[3];
-			score += qgram[index];
+			score += qgram.get(index);
 		}
-		return -score;
+		return score;
+	}
+
+	@Override
+	public double valueOf(final byte[] text, final int from, final int to) {
+		return valueOf(text, from, to, Double.NEGATIVE_INFINITY);
 	}
 
+	/**
+	 * Stops as soon as the score so far plus the best case for every remaining quadgram does not exceed the
+	 * minimum.
+	 * <p>
+	 * The index of each quadgram is rolled from the previous one by removing its first and appending the next
+	 * character. Four quadgrams are scored per step into independent sums, so that the table lookups of a step
+	 * do not wait for each other, and the bound is checked once per step.
+	 */
+	@Override
+	public double valueOf(final byte[] text, final int from, final int to, final double minimum) {
+		if (to - from < 4)
+			return 0;
+		final FloatBuffer qgram = this.qgram;
+		int index = 17576 * text[from] + 676 * text[from + 1] + 26 * text[from + 2] + text[from + 3];
+		double score0 = qgram.get(index), score1 = 0, score2 = 0, score3 = 0;
+		int i = from + 4; // the next character to append
+		for (; i + 3 < to; i += 4) {
+			final int index0 = (index - 17576 * text[i - 4]) * 26 + text[i];
+			final int index1 = (index0 - 17576 * text[i - 3]) * 26 + text[i + 1];
+			final int index2 = (index1 - 17576 * text[i - 2]) * 26 + text[i + 2];
+			final int index3 = (index2 - 17576 * text[i - 1]) * 26 + text[i + 3];
+			score0 += qgram.get(index0);
+			score1 += qgram.get(index1);
+			score2 += qgram.get(index2);
+			score3 += qgram.get(index3);
+			index = index3;
+			final double bestCase = score0 + score1 + score2 + score3 + (double) (to - 4 - i) * maxQgram;
+			if (bestCase + BOUND_TOLERANCE < minimum)
+				return bestCase;
+		}
+		for (; i < to; i++) {
+			index = (index - 17576 * text[i - 4]) * 26 + text[i];
+			score0 += qgram.get(index);
+		}
+		return score0 + score1 + score2 + score3;
+	}
+
+	/**
+	 * Maps the pre-compiled binary table if it exists and parses the text resource otherwise.
+	 * @return the log-probability of every quadgram by its index
+	 * @throws IOException if the resource could not be read
+	 */
+	static FloatBuffer loadQgram() throws IOException {
+		final ByteBuffer table = BinaryTables.load(BinaryTables.binaryName(FILE));
+		if (table != null)
+			return BinaryTables.readValues(table);
+		final InputStream resource = QgramIndexCalculator.class.getClassLoader().getResourceAsStream(FILE);
+		if (resource == null)
+			throw new IllegalStateException(FILE + " does not exist");
+		return loadQgram(resource);
+	}
 
-	private float[] loadQgram(final InputStream inputStream) throws IOException {
+	static FloatBuffer loadQgram(final InputStream inputStream) throws IOException {
 		StringTokenizer tokenizer = new StringTokenizer(FileIO.read(inputStream), VALUE_DELIMITER);
 		List<Float> result = new ArrayList<Float>();
 		while (tokenizer.hasMoreTokens()) {
@@ -54,6 +126,6 @@ public class QgramIndexCalculator implements TextScore {
 			result.add(value);
 		}
 		final Float[] resultArray = result.toArray(new Float[result.size()]);
-		return ArrayUtils.toPrimitive(resultArray);
+		return FloatBuffer.wrap(ArrayUtils.toPrimitive(resultArray));
 	}
 }
@@ -0,0 +1,131 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+
+/**
+ * Calculates quadgram statistics like the {@link QgramIndexCalculator}, but from a table of 16-bit log-probabilities.
+ * <p>
+ * Each log-probability <code>p</code> is stored as the unsigned step <code>round((p - minimum) / scale)</code>,
+ * with the scale chosen so that the steps span 16 bits. The table takes half the memory of the float table and
+ * thus stays in the caches longer, especially if several cores score at the same time.
+ * The steps are summed up as integers, so the score of a text differs from the float score by at most half a step
+ * per quadgram, and a bounded score only differs from the unbounded one if both are below the minimum.
+ */
+public class QuantizedQgramCalculator implements BoundedTextScore {
+	private static final int MAX_STEP = (1 << 16) - 1;
+	/** Amount of quadgrams whose steps always fit into an int */
+	private static final int MAX_QUADGRAMS = Integer.MAX_VALUE / MAX_STEP;
+	/** Step of every quadgram by its index, as unsigned 16-bit values */
+	private final char[] steps;
+	/** Log-probability of step 0 */
+	private final double minimum;
+	/** Log-probability of one step */
+	private final double scale;
+	/** Largest step of any quadgram, i.e. the best case for every quadgram that is not scored yet */
+	private final int maxStep;
+
+	/**
+	 * @throws IOException if the quadgram statistics could not be loaded
+	 */
+	public QuantizedQgramCalculator() throws IOException {
+		this(QgramIndexCalculator.loadQgram());
+	}
+
+	/**
+	 * @param qgram the log-probability of every quadgram by its index
+	 */
+	QuantizedQgramCalculator(final FloatBuffer qgram) {
+		float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+		for (int i = 0; i < qgram.limit(); i++) {
+			min = Math.min(min, qgram.get(i));
+			max = Math.max(max, qgram.get(i));
+		}
+		this.minimum = min;
+		this.scale = max > min ? ((double) max - min) / MAX_STEP : 1;
+		this.steps = new char[qgram.limit()];
+		int maxStep = 0;
+		for (int i = 0; i < steps.length; i++) {
+			steps[i] = (char) Math.round((qgram.get(i) - minimum) / scale);
+			maxStep = Math.max(maxStep, steps[i]);
+		}
+		this.maxStep = maxStep;
+	}
+
+	/**
+	 * @param quadgrams the amount of quadgrams scored
+	 * @param steps the sum of their steps
+	 * @return the log-probability of the quadgrams
+	 */
+	private double valueOf(final int quadgrams, final long steps) {
+		return quadgrams * minimum + steps * scale;
+	}
+
+	/**
+	 * Calculates the log-probability of the upper-case text. The higher the score, the more likely the text is
+	 * english.
+	 */
+	@Override
+	public double valueOf(final String text) {
+		final byte[] symbols = EnigmaAnalyzer.symbolsOf(text);
+		return valueOf(symbols, 0, symbols.length);
+	}
+
+	@Override
+	public double valueOf(final byte[] text, final int from, final int to) {
+		return valueOf(text, from, to, Double.NEGATIVE_INFINITY);
+	}
+
+	/**
+	 * Stops as soon as the steps so far plus the largest step for every remaining quadgram can not reach the
+	 * minimum. Texts too long for int sums are scored in parts without stopping.
+	 */
+	@Override
+	public double valueOf(final byte[] text, final int from, final int to, final double minimum) {
+		if (to - from < 4)
+			return 0;
+		final int quadgrams = to - from - 3;
+		if (quadgrams > MAX_QUADGRAMS) {
+			long sum = 0;
+			for (int start = from; start < to - 3; start += MAX_QUADGRAMS)
+				sum += sumOf(text, start, Math.min(start + MAX_QUADGRAMS + 3, to), Integer.MIN_VALUE);
+			return valueOf(quadgrams, sum);
+		}
+		// the smallest sum of steps whose score is at least the minimum, rounded down to be on the safe side
+		final double required = Math.floor((minimum - quadgrams * this.minimum) / scale) - 1;
+		return valueOf(quadgrams, sumOf(text, from, to, (int) required));
+	}
+
+	/**
+	 * Sums up the steps of at most {@link #MAX_QUADGRAMS} quadgrams, four per loop step like the
+	 * {@link QgramIndexCalculator}.
+	 * @param bound the sum of steps that the text has to reach
+	 * @return the sum of steps, or the best case if it fell below the bound
+	 */
+	private int sumOf(final byte[] text, final int from, final int to, final int bound) {
+		final char[] steps = this.steps;
+		final int maxStep = this.maxStep;
+		int index = 17576 * text[from] + 676 * text[from + 1] + 26 * text[from + 2] + text[from + 3];
+		int sum0 = steps[index], sum1 = 0, sum2 = 0, sum3 = 0;
+		int i = from + 4; // the next character to append
+		for (; i + 3 < to; i += 4) {
+			final int index0 = (index - 17576 * text[i - 4]) * 26 + text[i];
+			final int index1 = (index0 - 17576 * text[i - 3]) * 26 + text[i + 1];
+			final int index2 = (index1 - 17576 * text[i - 2]) * 26 + text[i + 2];
+			final int index3 = (index2 - 17576 * text[i - 1]) * 26 + text[i + 3];
+			sum0 += steps[index0];
+			sum1 += steps[index1];
+			sum2 += steps[index2];
+			sum3 += steps[index3];
+			index = index3;
+			final int bestCase = sum0 + sum1 + sum2 + sum3 + (to - 4 - i) * maxStep;
+			if (bestCase < bound)
+				return bestCase;
+		}
+		for (; i < to; i++) {
+			index = (index - 17576 * text[i - 4]) * 26 + text[i];
+			sum0 += steps[index];
+		}
+		return sum0 + sum1 + sum2 + sum3;
+	}
+}
@@ -0,0 +1,223 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+import nz.ac.aut.hss.encrypt.Enigma;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Finds the rotor order together with the key, i.e. tries every key with every ordered selection of rotors from
+ * {@link Enigma#ALPHABET_SCRAMBLED}.
+ * <p>
+ * Each rotor order and range of rotor positions is a task of its own on a fork/join pool. All tasks rate their
+ * plaintexts with the same text score and offer them to the same collector, so a {@link BoundedTextScore} stops
+ * scoring a plaintext as soon as it can not beat the best keys of any rotor order found so far.
+ * <p>
+ * The slowest rotor only moves when all other rotors complete their rotations, before that it adds a constant offset.
+ * As every rotor has each offset in one of its positions, orders that differ only in the slowest rotor decrypt to the
+ * same plaintexts as long as that rotor does not move. All keys are therefore only tried with the first order of each
+ * such group, the other orders only with the rotor states in which the slowest rotor moves during the ciphertext.
+ * The keys found are thus reported with the first order of the group unless the slowest rotor moves.
+ * <p>
+ * The keys of all rotor orders are numbered consecutively, the keys of the rotor order that comes first in
+ * lexicographic order first. Of equally scored keys, the one with the lower number ranks higher.
+ */
+public class RotorOrderAnalyzer implements CryptAnalyzer {
+	private static final int ALPHABET_SIZE = Enigma.ALPHABET.length;
+	/** Amount of keys that one task searches without splitting any further */
+	private static final long CHUNK_SIZE = 2048;
+	private final int rotors;
+	/** Amount of states of all rotors but the slowest */
+	private final long restStates;
+	private final int threads;
+	private final TextScore textScore;
+	/** The text score if it supports bounded scoring, null otherwise */
+	private final BoundedTextScore boundedScore;
+	/** A machine of the same kind as the attacked one for every rotor order */
+	private final List<Enigma> machines = new ArrayList<>();
+	/** Indices of the machines that are the first of the orders only differing in the slowest rotor */
+	private final BitSet representatives = new BitSet();
+	/** Plaintext character for every offset and ciphertext character, the same for every rotor order */
+	private final byte[] decryption;
+	private final long keysPerOrder;
+
+	/**
+	 * Rates the plaintexts with the shared {@link ScoringTables#quadgrams()}.
+	 * @param machine the machine to attack, whose kind and amount of rotors are used
+	 * @param threads the amount of threads to search with
+	 * @throws IOException if the quadgram statistics could not be loaded
+	 */
+	public RotorOrderAnalyzer(final Enigma machine, final int threads) throws IOException {
+		this(machine, threads, ScoringTables.quadgrams());
+	}
+
+	/**
+	 * @param machine the machine to attack, whose kind and amount of rotors are used
+	 * @param threads the amount of threads to search with
+	 * @param textScore the thread-safe score to rate plaintexts with
+	 */
+	public RotorOrderAnalyzer(final Enigma machine, final int threads, final TextScore textScore) {
+		if (threads <= 0)
+			throw new IllegalArgumentException("Amount of threads must be positive");
+		this.rotors = machine.getRotors();
+		this.threads = threads;
+		this.textScore = textScore;
+		this.boundedScore = textScore instanceof BoundedTextScore ? (BoundedTextScore) textScore : null;
+		this.decryption = machine.getDecryptionTable();
+		this.keysPerOrder = KeySpace.size(rotors);
+		this.restStates = KeySpace.size(rotors - 1);
+		addOrders(machine, new int[rotors], 0, new boolean[Enigma.ALPHABET_SCRAMBLED.length]);
+	}
+
+	/**
+	 * Adds a machine for every ordered selection of the remaining rotors, in lexicographic order.
+	 * @param rotor the index of the next rotor to choose
+	 * @param used whether each rotor is already chosen
+	 */
+	private void addOrders(final Enigma machine, final int[] order, final int rotor, final boolean[] used) {
+		if (rotor == order.length) {
+			machines.add(machine.withRotorOrder(order));
+			return;
+		}
+		boolean first = true;
+		for (int r = 0; r < used.length; r++) {
+			if (used[r])
+				continue;
+			if (rotor == order.length - 1 && first)
+				representatives.set(machines.size());
+			first = false;
+			used[r] = true;
+			order[rotor] = r;
+			addOrders(machine, order, rotor + 1, used);
+			used[r] = false;
+		}
+	}
+
+	/**
+	 * @return the amount of rotor orders that are searched
+	 */
+	public int getOrders() {
+		return machines.size();
+	}
+
+	/**
+	 * Attempts to find the key of the given cipher text.
+	 * @param ciphertext the encrypted text
+	 * @return the key of the best rotor order, null if no key could be found
+	 * @see #findCandidates(String, int) to get the rotor order as well
+	 */
+	@Override
+	public String findKey(final String ciphertext) {
+		final List<Candidate> candidates = findCandidates(ciphertext, 1);
+		return candidates.isEmpty() ? null : candidates.get(0).getKey();
+	}
+
+	/**
+	 * Finds the best keys of the given cipher text over all rotor orders.
+	 * @param ciphertext the encrypted text
+	 * @param count the maximum amount of keys to find
+	 * @return the best keys, best first
+	 */
+	public List<Candidate> findCandidates(final String ciphertext, final int count) {
+		if (!StringUtils.isAllUpperCase(ciphertext))
+			throw new IllegalArgumentException("Ciphertext is not all upper-case");
+		final byte[] symbols = EnigmaAnalyzer.symbolsOf(ciphertext);
+		final TopKeyCollector collector = new TopKeyCollector(count, threads);
+		// the slowest rotor moves during the ciphertext if the other rotors start in this state or a later one
+		final long moving = Math.max(0, restStates - symbols.length + 1);
+		final List<OrderSearchTask> tasks = new ArrayList<>(machines.size());
+		for (int o = 0; o < machines.size(); o++) {
+			if (representatives.get(o) || moving == 0) {
+				tasks.add(new OrderSearchTask(symbols, o, 0, keysPerOrder, collector));
+			} else if (moving < restStates) {
+				for (int p = 0; p < ALPHABET_SIZE; p++) // the slowest rotor is the most significant digit of the state
+					tasks.add(new OrderSearchTask(symbols, o, p * restStates + moving, (p + 1) * restStates,
+							collector));
+			}
+		}
+		final ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			pool.invoke(new RecursiveAction() {
+				@Override
+				protected void compute() {
+					invokeAll(tasks);
+				}
+			});
+		} finally {
+			pool.shutdown();
+		}
+		final long[] keys = new long[count];
+		final double[] scores = new double[count];
+		final int found = collector.rank(keys, scores);
+		final List<Candidate> candidates = new ArrayList<>(found);
+		for (int i = 0; i < found; i++) {
+			final Enigma machine = machines.get((int) (keys[i] / keysPerOrder));
+			candidates.add(new RotorOrderCandidate(machine.getRotorOrder(),
+					KeySpace.keyOf(keys[i] % keysPerOrder, rotors), scores[i]));
+		}
+		return candidates;
+	}
+
+	@Override
+	public List<String> findKeys(final List<String> ciphertexts) {
+		final List<String> keys = new ArrayList<>(ciphertexts.size());
+		for (String ciphertext : ciphertexts)
+			keys.add(findKey(ciphertext));
+		return keys;
+	}
+
+	/**
+	 * Searches a range of rotor states of one rotor order, splitting it in halves until it is small enough.
+	 */
+	private class OrderSearchTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final byte[] ciphertext;
+		private final int order;
+		private final long from, to;
+		private final TopKeyCollector collector;
+
+		private OrderSearchTask(final byte[] ciphertext, final int order, final long from, final long to,
+								final TopKeyCollector collector) {
+			this.ciphertext = ciphertext;
+			this.order = order;
+			this.from = from;
+			this.to = to;
+			this.collector = collector;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > CHUNK_SIZE) {
+				final long middle = from + (to - from) / 2;
+				invokeAll(new OrderSearchTask(ciphertext, order, from, middle, collector),
+						new OrderSearchTask(ciphertext, order, middle, to, collector));
+				return;
+			}
+			final Enigma machine = machines.get(order);
+			final int[] positions = new int[rotors];
+			final byte[] offsets = new byte[ciphertext.length];
+			final byte[] plaintext = new byte[ciphertext.length];
+			for (long state = from; state < to; state++) {
+				final long num = KeySpace.stateOf(state, rotors);
+				KeySpace.positionsOf(num, positions);
+				machine.keystream(positions, ciphertext.length, offsets);
+				boolean changed = false; // a plaintext equal to the ciphertext is not a valid encryption
+				for (int i = 0; i < ciphertext.length; i++) {
+					plaintext[i] = decryption[offsets[i] * ALPHABET_SIZE + ciphertext[i]];
+					changed |= plaintext[i] != ciphertext[i];
+				}
+				if (!changed)
+					continue;
+				final double score = boundedScore != null
+						? boundedScore.valueOf(plaintext, 0, plaintext.length, collector.threshold())
+						: textScore.valueOf(plaintext, 0, plaintext.length);
+				collector.offer(order * keysPerOrder + num, score);
+			}
+		}
+	}
+}
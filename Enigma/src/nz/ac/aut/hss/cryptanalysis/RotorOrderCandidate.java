@@ -0,0 +1,29 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+import java.util.Arrays;
+
+/**
+ * A key together with the rotor order it belongs to and the score of the plaintext it decrypts to.
+ */
+public class RotorOrderCandidate extends Candidate {
+	private final int[] rotorOrder;
+
+	/**
+	 * @param rotorOrder the index of each rotor in {@link nz.ac.aut.hss.encrypt.Enigma#ALPHABET_SCRAMBLED}
+	 * @param key the key
+	 * @param score the score of the plaintext
+	 */
+	public RotorOrderCandidate(final int[] rotorOrder, final String key, final double score) {
+		super(key, score);
+		this.rotorOrder = rotorOrder.clone();
+	}
+
+	public int[] getRotorOrder() {
+		return rotorOrder.clone();
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(rotorOrder) + " " + super.toString();
+	}
+}
@@ -0,0 +1,99 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rates keys in several stages, from cheap and imprecise to expensive and precise text scores.
+ * <p>
+ * The first stage rates every key and only its best keys survive to the next stage, which rates them again
+ * and passes on its best keys and so on. The last stage determines the candidates of the analyzer.
+ * Survivors that no stage can tell apart from the correct key are thus only rated by the expensive scores.
+ */
+public class ScoringCascade {
+	private final List<Stage> stages;
+
+	/**
+	 * @param stages the stages in the order they rate the keys
+	 */
+	public ScoringCascade(final Stage... stages) {
+		if (stages.length == 0)
+			throw new IllegalArgumentException("A cascade needs at least one stage");
+		this.stages = Collections.unmodifiableList(Arrays.asList(stages.clone()));
+	}
+
+	public List<Stage> getStages() {
+		return stages;
+	}
+
+	/**
+	 * @param count the amount of candidates that are requested of the cascade
+	 * @return the amount of keys that the first stage has to keep
+	 */
+	int firstSurvivors(final int count) {
+		return survivors(0, count);
+	}
+
+	/**
+	 * @param stage the index of the stage
+	 * @param count the amount of candidates that are requested of the cascade
+	 * @return the amount of keys that the stage passes on
+	 */
+	int survivors(final int stage, final int count) {
+		final int survivors = stages.get(stage).getSurvivors();
+		return stage == stages.size() - 1 ? Math.min(survivors, count) : survivors;
+	}
+
+	/**
+	 * A text score together with the amount of keys it lets survive.
+	 */
+	public static class Stage {
+		private final TextScore score;
+		private final int survivors;
+		private final int prefix;
+
+		/**
+		 * Creates a stage that rates the whole text and passes on as many keys as requested, i.e. a last stage.
+		 * @param score the score to rate the plaintexts with
+		 */
+		public Stage(final TextScore score) {
+			this(score, Integer.MAX_VALUE, 0);
+		}
+
+		/**
+		 * @param score the score to rate the plaintexts with, must be thread-safe if the analyzer uses threads
+		 * @param survivors the amount of best keys to pass on to the next stage
+		 * @param prefix the amount of characters at the beginning of each plaintext to rate, 0 for all
+		 */
+		public Stage(final TextScore score, final int survivors, final int prefix) {
+			if (survivors <= 0)
+				throw new IllegalArgumentException("Amount of survivors must be positive");
+			if (prefix < 0)
+				throw new IllegalArgumentException("Prefix must not be negative");
+			this.score = score;
+			this.survivors = survivors;
+			this.prefix = prefix;
+		}
+
+		public TextScore getScore() {
+			return score;
+		}
+
+		public int getSurvivors() {
+			return survivors;
+		}
+
+		public int getPrefix() {
+			return prefix;
+		}
+
+		/**
+		 * @param length the length of the plaintext
+		 * @return the index after the last character that is rated
+		 */
+		int end(final int length) {
+			return prefix > 0 ? Math.min(prefix, length) : length;
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads each text score once per process on its first use and hands out the same instance to every analyzer.
+ * All scores handed out are thread-safe and never change after loading.
+ * <p>
+ * Scores are loaded independently of each other, so a thread loading one score does not block threads using
+ * another. If a score can not be loaded, the next request tries again.
+ */
+public final class ScoringTables {
+	private static final Table<LetterFrequencyScore> LETTERS = new Table<LetterFrequencyScore>("letters") {
+		@Override
+		LetterFrequencyScore load() {
+			return new LetterFrequencyScore();
+		}
+	};
+	private static final Table<BigramIndexCalculator> BIGRAMS = new Table<BigramIndexCalculator>("bigrams") {
+		@Override
+		BigramIndexCalculator load() throws IOException {
+			return new BigramIndexCalculator();
+		}
+	};
+	private static final Table<BigramCalculator> BIGRAM_WORDS = new Table<BigramCalculator>("bigram words") {
+		@Override
+		BigramCalculator load() throws IOException {
+			return new BigramCalculator();
+		}
+	};
+	private static final Table<QgramIndexCalculator> QUADGRAMS = new Table<QgramIndexCalculator>("quadgrams") {
+		@Override
+		QgramIndexCalculator load() throws IOException {
+			return new QgramIndexCalculator();
+		}
+	};
+	private static final Table<QuantizedQgramCalculator> QUANTIZED_QUADGRAMS =
+			new Table<QuantizedQgramCalculator>("quantized quadgrams") {
+				@Override
+				QuantizedQgramCalculator load() throws IOException {
+					return new QuantizedQgramCalculator();
+				}
+			};
+	private static final Table<QgramCalculator> QUADGRAM_WORDS = new Table<QgramCalculator>("quadgram words") {
+		@Override
+		QgramCalculator load() throws IOException {
+			return new QgramCalculator();
+		}
+	};
+	private static final List<Table<?>> TABLES = new ArrayList<>();
+
+	static {
+		TABLES.add(LETTERS);
+		TABLES.add(BIGRAMS);
+		TABLES.add(BIGRAM_WORDS);
+		TABLES.add(QUADGRAMS);
+		TABLES.add(QUANTIZED_QUADGRAMS);
+		TABLES.add(QUADGRAM_WORDS);
+	}
+
+	private ScoringTables() {
+	}
+
+	public static LetterFrequencyScore letters() {
+		try {
+			return LETTERS.get();
+		} catch (IOException e) {
+			throw new IllegalStateException(e); // letter frequencies are not loaded from a resource
+		}
+	}
+
+	/**
+	 * @throws IOException if the bigram statistics could not be loaded
+	 */
+	public static BigramIndexCalculator bigrams() throws IOException {
+		return BIGRAMS.get();
+	}
+
+	/**
+	 * @throws IOException if the bigram statistics could not be loaded
+	 */
+	public static BigramCalculator bigramWords() throws IOException {
+		return BIGRAM_WORDS.get();
+	}
+
+	/**
+	 * @throws IOException if the quadgram statistics could not be loaded
+	 */
+	public static QgramIndexCalculator quadgrams() throws IOException {
+		return QUADGRAMS.get();
+	}
+
+	/**
+	 * @throws IOException if the quadgram statistics could not be loaded
+	 */
+	public static QuantizedQgramCalculator quantizedQuadgrams() throws IOException {
+		return QUANTIZED_QUADGRAMS.get();
+	}
+
+	/**
+	 * @throws IOException if the quadgram statistics could not be loaded
+	 */
+	public static QgramCalculator quadgramWords() throws IOException {
+		return QUADGRAM_WORDS.get();
+	}
+
+	/**
+	 * @return how long each score took to load and how often it was requested, only for scores requested so far
+	 */
+	public static List<LoadStatistics> getStatistics() {
+		final List<LoadStatistics> statistics = new ArrayList<>();
+		for (Table<?> table : TABLES) {
+			if (table.requests.get() > 0)
+				statistics.add(table.statistics());
+		}
+		return statistics;
+	}
+
+	/**
+	 * A text score that is loaded on first use.
+	 */
+	private abstract static class Table<T extends TextScore> {
+		private final String name;
+		private final AtomicLong requests = new AtomicLong();
+		private volatile T score;
+		private volatile long nanos;
+
+		private Table(final String name) {
+			this.name = name;
+		}
+
+		abstract T load() throws IOException;
+
+		private T get() throws IOException {
+			requests.incrementAndGet();
+			T score = this.score;
+			if (score == null) {
+				synchronized (this) {
+					score = this.score;
+					if (score == null) {
+						final long start = System.nanoTime();
+						score = load();
+						nanos = System.nanoTime() - start;
+						this.score = score;
+					}
+				}
+			}
+			return score;
+		}
+
+		private LoadStatistics statistics() {
+			return new LoadStatistics(name, score != null, nanos, requests.get());
+		}
+	}
+}
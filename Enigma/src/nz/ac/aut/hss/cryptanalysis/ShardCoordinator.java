@@ -0,0 +1,236 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+import nz.ac.aut.hss.encrypt.Enigma;
+import nz.ac.aut.hss.encrypt.ReflectorEnigma;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits the key space of an attack into shards and hands them to {@link ShardWorker}s that connect via sockets,
+ * e.g. worker processes on the same host.
+ * <p>
+ * After connecting, a worker receives the attack: whether the machine has a reflector, the amount of rotors followed
+ * by the index of each rotor in {@link Enigma#ALPHABET_SCRAMBLED}, the ciphertext and the amount of keys to find per
+ * shard. It then repeatedly receives a {@link #SHARD} with the
+ * numbers of its first key (inclusive) and last key (exclusive) and answers with the amount of keys found, followed
+ * by the number and score of each key. Once all shards are searched, the worker receives {@link #DONE}.
+ * <p>
+ * The shard of a worker whose connection breaks or that does not answer within the timeout is handed to the next
+ * worker, so a dead or hanging worker does not lose any keys. The keys of a shard are only merged once the whole answer has been received.
+ */
+public class ShardCoordinator implements Closeable {
+	static final byte SHARD = 1, DONE = 2;
+	/** Amount of shards if not specified otherwise, so that each worker gets many and the load is balanced */
+	public static final int DEFAULT_SHARDS = 1024;
+	/** Time in milliseconds that a worker may take for a shard if not specified otherwise */
+	public static final int DEFAULT_TIMEOUT = 10 * 60 * 1000;
+	/** Time in milliseconds that an idle worker waits for the shard of a dead worker before checking again */
+	private static final long POLL_INTERVAL = 100;
+	private final ServerSocket server;
+	private final boolean reflector;
+	private final int rotors;
+	private final int[] rotorOrder;
+	private final String ciphertext;
+	private final int count;
+	private final int timeout;
+	private final BlockingDeque<long[]> shards = new LinkedBlockingDeque<>();
+	private final CountDownLatch remainingShards;
+	private final TopKeyCollector collector;
+	private final List<Thread> handlers = Collections.synchronizedList(new ArrayList<Thread>());
+
+	/**
+	 * Gives each worker {@link #DEFAULT_TIMEOUT} to answer a shard.
+	 * @param machine the machine to attack
+	 * @param ciphertext the encrypted text
+	 * @param count the amount of best keys to find
+	 * @param shards the amount of shards to split the key space into, at most one per key
+	 * @param port the port to listen on for workers, 0 for any free port
+	 * @throws IOException if the port could not be bound
+	 */
+	public ShardCoordinator(final Enigma machine, final String ciphertext, final int count, final int shards,
+							final int port) throws IOException {
+		this(machine, ciphertext, count, shards, port, DEFAULT_TIMEOUT);
+	}
+
+	/**
+	 * @param machine the machine to attack
+	 * @param ciphertext the encrypted text
+	 * @param count the amount of best keys to find
+	 * @param shards the amount of shards to split the key space into, at most one per key
+	 * @param port the port to listen on for workers, 0 for any free port
+	 * @param timeout the time in milliseconds after which a worker that has not answered its shard is dropped
+	 * @throws IOException if the port could not be bound
+	 */
+	public ShardCoordinator(final Enigma machine, final String ciphertext, final int count, final int shards,
+							final int port, final int timeout) throws IOException {
+		if (!StringUtils.isAllUpperCase(ciphertext))
+			throw new IllegalArgumentException("Ciphertext is not all upper-case");
+		if (count <= 0)
+			throw new IllegalArgumentException("Amount of keys must be positive");
+		if (shards <= 0)
+			throw new IllegalArgumentException("Amount of shards must be positive");
+		if (timeout <= 0)
+			throw new IllegalArgumentException("Timeout must be positive");
+		this.reflector = machine instanceof ReflectorEnigma;
+		this.rotors = machine.getRotors();
+		this.rotorOrder = machine.getRotorOrder();
+		this.ciphertext = ciphertext;
+		this.count = count;
+		this.timeout = timeout;
+		final long keys = KeySpace.size(rotors);
+		final long shardSize = (keys + Math.min(shards, keys) - 1) / Math.min(shards, keys);
+		for (long from = 0; from < keys; from += shardSize)
+			this.shards.add(new long[]{from, Math.min(from + shardSize, keys)});
+		this.remainingShards = new CountDownLatch(this.shards.size());
+		this.collector = new TopKeyCollector(count);
+		this.server = new ServerSocket(port);
+	}
+
+	/**
+	 * @return the port that workers connect to
+	 */
+	public int getPort() {
+		return server.getLocalPort();
+	}
+
+	/**
+	 * @return the amount of shards that have not been searched yet
+	 */
+	public long getRemainingShards() {
+		return remainingShards.getCount();
+	}
+
+	/**
+	 * Accepts workers until all shards are searched.
+	 * @return the best keys of all shards, best first
+	 * @throws InterruptedException if interrupted while waiting for the workers
+	 */
+	public List<Candidate> run() throws InterruptedException {
+		final Thread acceptor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					while (true) {
+						final Socket socket = server.accept();
+						final Thread handler = new Thread(new Runnable() {
+							@Override
+							public void run() {
+								handle(socket);
+							}
+						}, "shard-handler");
+						handler.setDaemon(true);
+						handlers.add(handler);
+						handler.start();
+					}
+				} catch (IOException e) {
+					// the server socket was closed
+				}
+			}
+		}, "shard-acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+		try {
+			remainingShards.await();
+		} finally {
+			close();
+		}
+		// let the idle workers know that they are done
+		synchronized (handlers) {
+			for (Thread handler : handlers)
+				handler.join();
+		}
+		final long[] keys = new long[count];
+		final double[] scores = new double[count];
+		final int found = collector.rank(keys, scores);
+		final List<Candidate> candidates = new ArrayList<>(found);
+		for (int i = 0; i < found; i++)
+			candidates.add(new Candidate(KeySpace.keyOf(keys[i], rotors), scores[i]));
+		return candidates;
+	}
+
+	/**
+	 * Hands shards to a worker until all shards are searched or the connection breaks.
+	 */
+	private void handle(final Socket socket) {
+		try (Socket s = socket;
+			 DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+			 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+			s.setSoTimeout(timeout); // a worker that does not answer is treated like a dead one
+			out.writeBoolean(reflector);
+			out.writeInt(rotors);
+			for (int rotor : rotorOrder)
+				out.writeInt(rotor);
+			final byte[] text = ciphertext.getBytes(StandardCharsets.US_ASCII);
+			out.writeInt(text.length);
+			out.write(text);
+			out.writeInt(count);
+			out.flush();
+			while (true) {
+				final long[] shard = shards.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+				if (shard == null) {
+					if (remainingShards.getCount() == 0) {
+						out.writeByte(DONE);
+						out.flush();
+						return;
+					}
+					continue; // another worker might still die and leave its shard behind
+				}
+				try {
+					search(shard, in, out);
+				} catch (IOException e) {
+					shards.addFirst(shard);
+					throw e;
+				}
+				remainingShards.countDown();
+			}
+		} catch (IOException e) {
+			// the worker is gone or timed out, its shard has been put back
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void search(final long[] shard, final DataInputStream in, final DataOutputStream out)
+			throws IOException {
+		out.writeByte(SHARD);
+		out.writeLong(shard[0]);
+		out.writeLong(shard[1]);
+		out.flush();
+		final int found = in.readInt();
+		if (found < 0 || found > count)
+			throw new IOException("Invalid amount of keys " + found);
+		final long[] keys = new long[found];
+		final double[] scores = new double[found];
+		for (int i = 0; i < found; i++) {
+			keys[i] = in.readLong();
+			scores[i] = in.readDouble();
+		}
+		for (int i = 0; i < found; i++)
+			collector.offer(keys[i], scores[i]);
+	}
+
+	@Override
+	public void close() {
+		try {
+			server.close();
+		} catch (IOException e) {
+			// nothing left to clean up
+		}
+	}
+}
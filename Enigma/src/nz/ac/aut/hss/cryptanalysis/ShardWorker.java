@@ -0,0 +1,74 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+import nz.ac.aut.hss.encrypt.Enigma;
+import nz.ac.aut.hss.encrypt.ReflectorEnigma;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Searches the shards that a {@link ShardCoordinator} hands out.
+ */
+public class ShardWorker {
+	private final String host;
+	private final int port;
+	private final int threads;
+
+	/**
+	 * @param host the host of the coordinator
+	 * @param port the port of the coordinator
+	 * @param threads the amount of threads to search each shard with
+	 */
+	public ShardWorker(final String host, final int port, final int threads) {
+		if (threads <= 0)
+			throw new IllegalArgumentException("Amount of threads must be positive");
+		this.host = host;
+		this.port = port;
+		this.threads = threads;
+	}
+
+	/**
+	 * Searches shards until the coordinator has no more.
+	 * @return the amount of shards searched
+	 * @throws IOException if the connection to the coordinator broke or the statistics could not be loaded
+	 */
+	public int run() throws IOException {
+		try (Socket socket = new Socket(host, port);
+			 DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+			final boolean reflector = in.readBoolean();
+			final int[] rotorOrder = new int[in.readInt()];
+			for (int r = 0; r < rotorOrder.length; r++)
+				rotorOrder[r] = in.readInt();
+			final byte[] text = new byte[in.readInt()];
+			in.readFully(text);
+			final String ciphertext = new String(text, StandardCharsets.US_ASCII);
+			final int count = in.readInt();
+			final Enigma machine = reflector ? new ReflectorEnigma(rotorOrder) : new Enigma(rotorOrder);
+			final EnigmaAnalyzer analyzer = new EnigmaAnalyzer(machine, threads);
+			int searched = 0;
+			while (true) {
+				final byte type = in.readByte();
+				if (type == ShardCoordinator.DONE)
+					return searched;
+				if (type != ShardCoordinator.SHARD)
+					throw new IOException("Unknown message " + type);
+				final long from = in.readLong(), to = in.readLong();
+				final List<Candidate> candidates = analyzer.findCandidates(ciphertext, count, from, to);
+				out.writeInt(candidates.size());
+				for (Candidate candidate : candidates) {
+					out.writeLong(KeySpace.numberOf(candidate.getKey()));
+					out.writeDouble(candidate.getScore());
+				}
+				out.flush();
+				searched++;
+			}
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+/**
+ * How many keys a stage of a {@link ScoringCascade} has rated and rejected.
+ */
+public class StageStatistics {
+	private final String score;
+	private final long rated;
+	private final long survivors;
+	private final long nanos;
+
+	/**
+	 * @param score the name of the text score of the stage
+	 * @param rated the amount of keys rated by the stage
+	 * @param survivors the amount of keys passed on by the stage
+	 * @param nanos the time spent by the stage
+	 */
+	public StageStatistics(final String score, final long rated, final long survivors, final long nanos) {
+		this.score = score;
+		this.rated = rated;
+		this.survivors = survivors;
+		this.nanos = nanos;
+	}
+
+	public String getScore() {
+		return score;
+	}
+
+	public long getRated() {
+		return rated;
+	}
+
+	public long getSurvivors() {
+		return survivors;
+	}
+
+	public long getRejected() {
+		return rated - survivors;
+	}
+
+	public long getNanos() {
+		return nanos;
+	}
+
+	/**
+	 * @param other the statistics of the same stage in another search
+	 * @return the statistics of both searches
+	 */
+	StageStatistics plus(final StageStatistics other) {
+		return new StageStatistics(score, rated + other.rated, survivors + other.survivors, nanos + other.nanos);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: %d rated, %d rejected (%.2f%%), %dms", score, rated, getRejected(),
+				rated > 0 ? getRejected() * 100.0 / rated : 0.0, nanos / 1000000);
+	}
+}
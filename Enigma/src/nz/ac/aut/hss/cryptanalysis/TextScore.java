@@ -12,4 +12,13 @@ public interface TextScore {
 	 * @return the score of the text according to the metric of this class
 	 */
 	public double valueOf(String text);
+
+	/**
+	 * Calculates the score of a part of the text.
+	 * @param text the text as indices in the alphabet, i.e. 0 for 'a' and 25 for 'z'
+	 * @param from the index of the first character (inclusive)
+	 * @param to the index after the last character (exclusive)
+	 * @return the score of the text according to the metric of this class
+	 */
+	public double valueOf(byte[] text, int from, int to);
 }
@@ -0,0 +1,173 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+/**
+ * Collects the best keys with their scores from many threads at once.
+ * <p>
+ * Every thread offers its keys to one of several stripes, each keeping the best keys offered to it in a heap with
+ * a lock of its own. Keys that are worse than the worst key of a full stripe are rejected without locking.
+ * Since no key that a stripe rejected can be among the overall best keys, the stripes are only merged when the
+ * ranking is requested.
+ * <p>
+ * Keys are identified by their number. Of two keys with the same score, the one with the lower number ranks
+ * higher, i.e. the one that a sequential search would have found first.
+ */
+public class TopKeyCollector {
+	private final int capacity;
+	private final Stripe[] stripes;
+
+	/**
+	 * @param capacity the amount of best keys to collect
+	 */
+	public TopKeyCollector(final int capacity) {
+		this(capacity, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param capacity the amount of best keys to collect
+	 * @param stripes the amount of stripes, i.e. how many threads can offer keys without contention
+	 */
+	public TopKeyCollector(final int capacity, final int stripes) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Capacity must be positive");
+		if (stripes <= 0)
+			throw new IllegalArgumentException("Amount of stripes must be positive");
+		this.capacity = capacity;
+		this.stripes = new Stripe[stripes];
+		for (int i = 0; i < stripes; i++)
+			this.stripes[i] = new Stripe(capacity);
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the score that a key offered by the current thread has to reach to be collected,
+	 * negative infinity while there is still room
+	 */
+	public double threshold() {
+		return stripe().threshold;
+	}
+
+	/**
+	 * @param key the number of the key
+	 * @param score the score of the key
+	 * @return true if the key is among the best keys offered so far to the stripe of the current thread
+	 */
+	public boolean offer(final long key, final double score) {
+		final Stripe stripe = stripe();
+		if (score < stripe.threshold)
+			return false;
+		synchronized (stripe) {
+			return stripe.offer(key, score);
+		}
+	}
+
+	/**
+	 * Ranks the best keys of all stripes.
+	 * While keys are still offered, the ranking may miss the latest of them.
+	 * @param keys receives the numbers of the best keys, best first. Must be at least as long as the capacity.
+	 * @param scores receives the score of each key. Must be at least as long as the capacity.
+	 * @return the amount of keys written
+	 */
+	public int rank(final long[] keys, final double[] scores) {
+		final Stripe all = new Stripe(capacity);
+		for (Stripe stripe : stripes) {
+			synchronized (stripe) {
+				for (int i = 0; i < stripe.size; i++)
+					all.offer(stripe.keys[i], stripe.scores[i]);
+			}
+		}
+		// remove the worst key until the heap is empty, filling the arrays from the back
+		final int count = all.size;
+		for (int i = count - 1; i >= 0; i--) {
+			keys[i] = all.keys[0];
+			scores[i] = all.scores[0];
+			all.removeWorst();
+		}
+		return count;
+	}
+
+	private Stripe stripe() {
+		return stripes[(int) (Thread.currentThread().getId() % stripes.length)];
+	}
+
+	/**
+	 * Heap of the best keys with the worst key at its root.
+	 */
+	private static class Stripe {
+		private final long[] keys;
+		private final double[] scores;
+		private int size;
+		/** Score of the worst key once the heap is full */
+		private volatile double threshold = Double.NEGATIVE_INFINITY;
+
+		private Stripe(final int capacity) {
+			keys = new long[capacity];
+			scores = new double[capacity];
+		}
+
+		private boolean offer(final long key, final double score) {
+			if (size < keys.length) {
+				keys[size] = key;
+				scores[size] = score;
+				siftUp(size++);
+			} else if (isWorse(keys[0], scores[0], key, score)) {
+				keys[0] = key;
+				scores[0] = score;
+				siftDown(0);
+			} else {
+				return false;
+			}
+			if (size == keys.length)
+				threshold = scores[0];
+			return true;
+		}
+
+		private void removeWorst() {
+			size--;
+			keys[0] = keys[size];
+			scores[0] = scores[size];
+			siftDown(0);
+		}
+
+		private void siftUp(int index) {
+			while (index > 0) {
+				final int parent = (index - 1) / 2;
+				if (!isWorse(keys[index], scores[index], keys[parent], scores[parent]))
+					break;
+				swap(index, parent);
+				index = parent;
+			}
+		}
+
+		private void siftDown(int index) {
+			while (true) {
+				final int left = 2 * index + 1, right = left + 1;
+				int worst = index;
+				if (left < size && isWorse(keys[left], scores[left], keys[worst], scores[worst]))
+					worst = left;
+				if (right < size && isWorse(keys[right], scores[right], keys[worst], scores[worst]))
+					worst = right;
+				if (worst == index)
+					return;
+				swap(index, worst);
+				index = worst;
+			}
+		}
+
+		private void swap(final int i, final int j) {
+			final long key = keys[i];
+			keys[i] = keys[j];
+			keys[j] = key;
+			final double score = scores[i];
+			scores[i] = scores[j];
+			scores[j] = score;
+		}
+
+		private static boolean isWorse(final long key, final double score, final long otherKey,
+									   final double otherScore) {
+			return score < otherScore || (score == otherScore && key > otherKey);
+		}
+	}
+}
@@ -1,6 +1,10 @@
 package nz.ac.aut.hss.encrypt;
 
 /**
+ * An Enigma machine, i.e. its rotors.
+ * <p>
+ * Machines are immutable: the rotor positions of a call are held by the call itself or, for texts given in pieces,
+ * by an {@link EnigmaSession}. One machine can thus serve any amount of threads at the same time.
  * @see <a href="http://www.codesandciphers.org.uk/enigma/enigma3.htm">documentation</a>,
  * <a href="http://www.codesandciphers.org.uk/enigma/rotorspec.htm">rotor specification</a>,
  * <a href="http://www.codesandciphers.org.uk/enigma/example1.htm">example</a>
@@ -40,96 +44,252 @@ public class Enigma implements Encrypter, Decrypter {
 					'I', 'U', 'Y', 'G', 'V'},
 	};
 
-	/** Matrix of rotors x ALPHABET_SIZE */
-	protected char[][] rotors;
-
-	/** Current index of each rotor */
-	protected final int[] rotorPositions;
+	/** Matrix of rotors x ALPHABET_SIZE, never modified */
+	protected final char[][] rotors;
+	/** Index of each rotor in {@link #ALPHABET_SCRAMBLED} */
+	private final int[] rotorOrder;
+	/** Computes the keystreams of these rotors */
+	private final EnigmaKernel kernel;
 
+	/**
+	 * Uses the first rotors of {@link #ALPHABET_SCRAMBLED} in their order.
+	 * @param rotors the amount of rotors
+	 */
 	public Enigma(final int rotors) {
-		this.rotorPositions = new int[rotors];
-		this.rotors = new char[rotors][];
-		System.arraycopy(ALPHABET_SCRAMBLED, 0, this.rotors, 0, rotors); // fill with pre-determined
+		this(defaultOrder(rotors));
 	}
 
 	/**
-	 * Rotates the rotors to the initial position as indicated by the key.
+	 * @param rotorOrder the index of each rotor in {@link #ALPHABET_SCRAMBLED}, each rotor may be used once
+	 */
+	public Enigma(final int[] rotorOrder) {
+		if (rotorOrder.length == 0)
+			throw new IllegalArgumentException("At least one rotor is required");
+		this.rotors = new char[rotorOrder.length][];
+		this.rotorOrder = rotorOrder.clone();
+		for (int i = 0; i < rotorOrder.length; i++) {
+			if (rotorOrder[i] < 0 || rotorOrder[i] >= ALPHABET_SCRAMBLED.length)
+				throw new IllegalArgumentException("There is no rotor " + rotorOrder[i]);
+			for (int j = 0; j < i; j++) {
+				if (rotorOrder[j] == rotorOrder[i])
+					throw new IllegalArgumentException("Rotor " + rotorOrder[i] + " is used more than once");
+			}
+			this.rotors[i] = ALPHABET_SCRAMBLED[rotorOrder[i]];
+		}
+		this.kernel = EnigmaKernel.of(this.rotors);
+	}
+
+	private static int[] defaultOrder(final int rotors) {
+		if (rotors < 1 || rotors > ALPHABET_SCRAMBLED.length)
+			throw new IllegalArgumentException("Amount of rotors must be between 1 and " + ALPHABET_SCRAMBLED.length);
+		final int[] order = new int[rotors];
+		for (int i = 0; i < rotors; i++) {
+			order[i] = i;
+		}
+		return order;
+	}
+
+	/**
+	 * Determines the initial position of each rotor as indicated by the key.
 	 * @param key the key consisting of upper-case alpha characters only
+	 * @return the positions
 	 */
-	protected void applyRotations(final String key) {
+	protected int[] applyRotations(final String key) {
 		validateKey(key);
+		final int[] rotorPositions = new int[rotors.length];
 		for (int i = 0; i < rotorPositions.length; i++) {
 			rotorPositions[i] = key.charAt(i) - 'A';
 		}
+		return rotorPositions;
 	}
 
 	public int getRotors() {
-		return rotorPositions.length;
+		return rotors.length;
+	}
+
+	/**
+	 * @return the index of each rotor in {@link #ALPHABET_SCRAMBLED}
+	 */
+	public int[] getRotorOrder() {
+		return rotorOrder.clone();
+	}
+
+	/**
+	 * Creates a new machine with the same rotor setup as this one.
+	 * As machines are immutable, a copy is not required to use the machine on another thread.
+	 * @return a new machine of the same kind and rotors
+	 */
+	public Enigma copy() {
+		return withRotorOrder(rotorOrder);
+	}
+
+	/**
+	 * @param rotorOrder the index of each rotor in {@link #ALPHABET_SCRAMBLED}, each rotor may be used once
+	 * @return a new machine of the same kind with the given rotors
+	 */
+	public Enigma withRotorOrder(final int[] rotorOrder) {
+		return new Enigma(rotorOrder);
+	}
+
+	/**
+	 * @param rotor the index of the rotor
+	 * @param position the position of the rotor
+	 * @return the offset that the rotor in the given position adds to a character
+	 */
+	public int getRotorOffset(final int rotor, final int position) {
+		return rotors[rotor][position] - 'A';
+	}
+
+	/**
+	 * Encrypts a single character given the sum of all rotor offsets at its position.
+	 * @param symbol the index of the plaintext character in the {@link #ALPHABET}
+	 * @param offset the sum of all rotor offsets, modulo the alphabet size
+	 * @return the index of the ciphertext character in the {@link #ALPHABET}
+	 */
+	public int encryptSymbol(final int symbol, final int offset) {
+		return (symbol + offset) % ALPHABET.length;
+	}
+
+	/**
+	 * Decrypts a single character given the sum of all rotor offsets at its position.
+	 * @param symbol the index of the ciphertext character in the {@link #ALPHABET}
+	 * @param offset the sum of all rotor offsets, modulo the alphabet size
+	 * @return the index of the plaintext character in the {@link #ALPHABET}
+	 */
+	public int decryptSymbol(final int symbol, final int offset) {
+		int index = (symbol - offset) % ALPHABET.length;
+		if (index < 0)
+			index += ALPHABET.length;
+		return index;
 	}
 
 	private enum Mode {
 		ENCODE, DECODE
 	}
 
-	private String encode(String input, Mode mode) {
+	private String encode(String input, Mode mode, final int[] rotorPositions) {
 		char[] chars = input.toCharArray();
-		// run either from inner to outer rotor (encryption) or vice-versa (decryption)
-		int from = -1, to = -1, direction = 0;
-		switch (mode) {
-			case ENCODE:
-				from = 0;
-				to = rotorPositions.length;
-				direction = 1;
-				break;
-			case DECODE:
-				from = rotorPositions.length - 1;
-				to = 0;
-				direction = -1;
-				break;
-		}
+		// add the rotor offsets (encryption) or subtract them (decryption)
+		final int direction = mode == Mode.ENCODE ? 1 : -1;
+		final byte[] offsets = new byte[chars.length];
+		kernel.keystream(rotorPositions, chars.length, offsets);
 		for (int c = 0; c < chars.length; c++) {
-			int index = chars[c] - 'A';
-			for (int i = from; from < to ? i < to : i >= to; i += direction) {
-				index = index + direction * (rotors[i][rotorPositions[i]] - 'A');
-			}
-			index %= ALPHABET.length;
+			int index = (chars[c] - 'A' + direction * offsets[c]) % ALPHABET.length;
 			if (index < 0)
 				index += ALPHABET.length;
 			chars[c] = ALPHABET[index];
-			rotorTick();
 		}
 		return new String(chars);
 	}
 
-	protected void rotorTick() {
-		rotorPositions[0]++; // always move first rotor
-		for (int i = 0; i < rotorPositions.length; i++) {
-			if (rotorPositions[i] == ALPHABET.length) { // full rotation reached
-				rotorPositions[i] = 0; // reset
-				if (i < rotorPositions.length - 1) { // move next rotor if existent
-					rotorPositions[i + 1]++;
-				}
+	/**
+	 * Decrypts a text given as indices in the {@link #ALPHABET} into a buffer supplied by the caller.
+	 * Unlike {@link #decrypt(String, String)}, this method does not create any objects.
+	 * @param ciphertext the ciphertext characters as indices in the alphabet
+	 * @param length the amount of characters to decrypt
+	 * @param positions the initial position of each rotor, i.e. the key as indices in the alphabet.
+	 * The array itself is not modified.
+	 * @param plaintext the buffer receiving the plaintext characters as indices in the alphabet
+	 */
+	public void decrypt(final byte[] ciphertext, final int length, final int[] positions, final byte[] plaintext) {
+		kernel.keystream(positions, length, plaintext);
+		for (int c = 0; c < length; c++) {
+			plaintext[c] = (byte) decryptSymbol(ciphertext[c], plaintext[c]);
+		}
+	}
+
+	/**
+	 * Computes the sum of all rotor offsets at each position, i.e. the keystream of a key.
+	 * Only the first rotor moves with every character, the other rotors add a constant offset until it has
+	 * completed a rotation. The offsets are thus computed in runs of up to one rotation without ticking the rotors,
+	 * by a kernel specialized for the amount of rotors (see {@link EnigmaKernel}).
+	 * @param positions the initial position of each rotor, i.e. the key as indices in the alphabet.
+	 * The array itself is not modified.
+	 * @param length the amount of offsets to compute
+	 * @param offsets the buffer receiving the offsets, modulo the alphabet size
+	 */
+	public void keystream(final int[] positions, final int length, final byte[] offsets) {
+		kernel.keystream(positions, length, offsets);
+	}
+
+	/**
+	 * @return the kernel computing the keystreams of this machine
+	 */
+	EnigmaKernel getKernel() {
+		return kernel;
+	}
+
+	/**
+	 * @return the plaintext character for every offset (major) and ciphertext character (minor),
+	 * as indices in the alphabet
+	 * @see #decryptSymbol(int, int)
+	 */
+	public byte[] getDecryptionTable() {
+		final byte[] table = new byte[ALPHABET.length * ALPHABET.length];
+		for (int offset = 0; offset < ALPHABET.length; offset++) {
+			for (int symbol = 0; symbol < ALPHABET.length; symbol++) {
+				table[offset * ALPHABET.length + symbol] = (byte) decryptSymbol(symbol, offset);
 			}
 		}
+		return table;
+	}
+
+	/**
+	 * Determines the rotor positions after the given amount of letters without moving the rotors letter by letter.
+	 * The rotors count like an odometer with the first rotor as the least significant digit, so this is an addition.
+	 * @param key the key consisting of upper-case alpha characters only
+	 * @param letters the amount of letters en-/decrypted since the rotors were set to the key
+	 * @return the rotor positions as a key, which en-/decrypts the rest of the text like the given key would
+	 */
+	public String seek(final String key, final long letters) {
+		validateKey(key);
+		if (letters < 0)
+			throw new IllegalArgumentException("Amount of letters must not be negative");
+		final char[] positions = key.toCharArray();
+		long carry = letters;
+		for (int i = 0; i < positions.length && carry > 0; i++) {
+			final long position = positions[i] - 'A' + carry;
+			positions[i] = ALPHABET[(int) (position % ALPHABET.length)];
+			carry = position / ALPHABET.length;
+		}
+		return new String(positions);
+	}
+
+	/**
+	 * Starts to encrypt a text that is given in pieces.
+	 * @param key the key consisting of upper-case alpha characters only
+	 * @return the session that carries the rotor state from one piece to the next
+	 */
+	public EnigmaSession encryptSession(final String key) {
+		validateKey(key);
+		return new EnigmaSession(this, key, true);
+	}
+
+	/**
+	 * Starts to decrypt a text that is given in pieces.
+	 * @param key the key consisting of upper-case alpha characters only
+	 * @return the session that carries the rotor state from one piece to the next
+	 */
+	public EnigmaSession decryptSession(final String key) {
+		validateKey(key);
+		return new EnigmaSession(this, key, false);
 	}
 
 	@Override
 	public String encrypt(final String plaintext, final String key) {
-		applyRotations(key);
-		return encode(plaintext.toUpperCase(), Mode.ENCODE);
+		return encode(plaintext.toUpperCase(), Mode.ENCODE, applyRotations(key));
 	}
 
 	@Override
 	public String decrypt(final String ciphertext, final String key) {
-		applyRotations(key);
-		return encode(ciphertext, Mode.DECODE).toLowerCase();
+		return encode(ciphertext, Mode.DECODE, applyRotations(key)).toLowerCase();
 	}
 
 	protected void validateKey(final String key) {
 		// length
-		if (key.length() != rotorPositions.length)
+		if (key.length() != rotors.length)
 			throw new IllegalArgumentException("Key length (" + key.length() + ") must be equal " +
-					"to the number of rotors (" + rotorPositions.length + ")");
+					"to the number of rotors (" + rotors.length + ")");
 		// characters
 		for (char c : key.toCharArray()) {
 			boolean found = false;
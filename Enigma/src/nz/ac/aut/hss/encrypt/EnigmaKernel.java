@@ -0,0 +1,216 @@
+package nz.ac.aut.hss.encrypt;
+
+/**
+ * Computes keystreams, i.e. the sum of all rotor offsets at each position, for a fixed set of rotors.
+ * <p>
+ * Only the first rotor moves with every character, the other rotors add a constant offset until it has completed a
+ * rotation. For each such offset, the offsets of a whole rotation of the first rotor are kept in a row of a table,
+ * so a run of the keystream is copied from the table at once. {@link #of(char[][])} chooses a kernel for the amount
+ * of rotors that moves the other rotors in straight-line code with their offsets in fields of their own, and a
+ * generic kernel with loops over all rotors for large amounts of rotors.
+ * <p>
+ * The wiring is kept in tables rather than bound into a method handle per machine: the JIT only treats the bound
+ * tables as constants if the handle itself is a constant, i.e. a static field of a class of its own per wiring,
+ * and with the handle in a field of the kernel, the keystream takes about 40% longer than with these kernels.
+ * <p>
+ * Kernels are immutable and thread-safe.
+ */
+abstract class EnigmaKernel {
+	private static final int ALPHABET_SIZE = Enigma.ALPHABET.length;
+	/** Offsets of a rotation of the first rotor (minor) for every offset of the other rotors (major) */
+	private final byte[] runs;
+
+	/**
+	 * @param first the wiring of the first rotor
+	 */
+	private EnigmaKernel(final char[] first) {
+		runs = new byte[ALPHABET_SIZE * ALPHABET_SIZE];
+		for (int rest = 0; rest < ALPHABET_SIZE; rest++) {
+			for (int position = 0; position < ALPHABET_SIZE; position++)
+				runs[rest * ALPHABET_SIZE + position] = (byte) ((first[position] - 'A' + rest) % ALPHABET_SIZE);
+		}
+	}
+
+	/**
+	 * @param rotors the wiring of each rotor, at least one
+	 * @return the kernel for the rotors
+	 */
+	static EnigmaKernel of(final char[][] rotors) {
+		switch (rotors.length) {
+			case 1:
+				return new OneRotor(rotors);
+			case 2:
+				return new TwoRotors(rotors);
+			case 3:
+				return new ThreeRotors(rotors);
+			case 4:
+				return new FourRotors(rotors);
+			default:
+				return new Rotors(rotors);
+		}
+	}
+
+	/**
+	 * @param rotor the wiring of a rotor
+	 * @return the offset of the rotor in each position
+	 */
+	private static int[] offsetsOf(final char[] rotor) {
+		final int[] offsets = new int[ALPHABET_SIZE];
+		for (int position = 0; position < ALPHABET_SIZE; position++)
+			offsets[position] = rotor[position] - 'A';
+		return offsets;
+	}
+
+	/**
+	 * Computes the keystream of a key.
+	 * @param positions the initial position of each rotor, i.e. the key as indices in the alphabet.
+	 * The array itself is not modified.
+	 * @param length the amount of offsets to compute
+	 * @param offsets the buffer receiving the offsets, modulo the alphabet size
+	 */
+	abstract void keystream(int[] positions, int length, byte[] offsets);
+
+	/**
+	 * Copies the offsets of the first rotor from its position until it has completed its rotation or the keystream
+	 * is complete.
+	 * @param rest the sum of the offsets of the other rotors, modulo the alphabet size
+	 * @param position the position of the first rotor
+	 * @param c the index of the next offset
+	 * @return the index after the last offset copied
+	 */
+	final int run(final int rest, final int position, final int c, final int length, final byte[] offsets) {
+		final int count = Math.min(ALPHABET_SIZE - position, length - c);
+		System.arraycopy(runs, rest * ALPHABET_SIZE + position, offsets, c, count);
+		return c + count;
+	}
+
+	private static final class OneRotor extends EnigmaKernel {
+		private OneRotor(final char[][] rotors) {
+			super(rotors[0]);
+		}
+
+		@Override
+		void keystream(final int[] positions, final int length, final byte[] offsets) {
+			int c = run(0, positions[0], 0, length, offsets);
+			while (c < length)
+				c = run(0, 0, c, length, offsets);
+		}
+	}
+
+	private static final class TwoRotors extends EnigmaKernel {
+		private final int[] second;
+
+		private TwoRotors(final char[][] rotors) {
+			super(rotors[0]);
+			second = offsetsOf(rotors[1]);
+		}
+
+		@Override
+		void keystream(final int[] positions, final int length, final byte[] offsets) {
+			int p1 = positions[1];
+			int c = run(second[p1], positions[0], 0, length, offsets);
+			while (c < length) {
+				p1 = p1 + 1 == ALPHABET_SIZE ? 0 : p1 + 1;
+				c = run(second[p1], 0, c, length, offsets);
+			}
+		}
+	}
+
+	private static final class ThreeRotors extends EnigmaKernel {
+		private final int[] second, third;
+
+		private ThreeRotors(final char[][] rotors) {
+			super(rotors[0]);
+			second = offsetsOf(rotors[1]);
+			third = offsetsOf(rotors[2]);
+		}
+
+		@Override
+		void keystream(final int[] positions, final int length, final byte[] offsets) {
+			int p1 = positions[1], p2 = positions[2];
+			int c = run((second[p1] + third[p2]) % ALPHABET_SIZE, positions[0], 0, length, offsets);
+			while (c < length) {
+				if (++p1 == ALPHABET_SIZE) {
+					p1 = 0;
+					p2 = p2 + 1 == ALPHABET_SIZE ? 0 : p2 + 1;
+				}
+				c = run((second[p1] + third[p2]) % ALPHABET_SIZE, 0, c, length, offsets);
+			}
+		}
+	}
+
+	private static final class FourRotors extends EnigmaKernel {
+		private final int[] second, third, fourth;
+
+		private FourRotors(final char[][] rotors) {
+			super(rotors[0]);
+			second = offsetsOf(rotors[1]);
+			third = offsetsOf(rotors[2]);
+			fourth = offsetsOf(rotors[3]);
+		}
+
+		@Override
+		void keystream(final int[] positions, final int length, final byte[] offsets) {
+			int p1 = positions[1], p2 = positions[2], p3 = positions[3];
+			int c = run((second[p1] + third[p2] + fourth[p3]) % ALPHABET_SIZE, positions[0], 0, length, offsets);
+			while (c < length) {
+				if (++p1 == ALPHABET_SIZE) {
+					p1 = 0;
+					if (++p2 == ALPHABET_SIZE) {
+						p2 = 0;
+						p3 = p3 + 1 == ALPHABET_SIZE ? 0 : p3 + 1;
+					}
+				}
+				c = run((second[p1] + third[p2] + fourth[p3]) % ALPHABET_SIZE, 0, c, length, offsets);
+			}
+		}
+	}
+
+	/**
+	 * Moves any amount of rotors, holding the state of all rotors but the first as a number with the second rotor
+	 * as the least significant digit.
+	 */
+	private static final class Rotors extends EnigmaKernel {
+		/** Offset of each rotor but the first (major) in each position (minor) */
+		private final int[] others;
+		private final int count;
+		/** Amount of states of all rotors but the first */
+		private final long otherStates;
+
+		private Rotors(final char[][] rotors) {
+			super(rotors[0]);
+			count = rotors.length - 1;
+			others = new int[count * ALPHABET_SIZE];
+			long otherStates = 1;
+			for (int r = 0; r < count; r++) {
+				System.arraycopy(offsetsOf(rotors[r + 1]), 0, others, r * ALPHABET_SIZE, ALPHABET_SIZE);
+				otherStates *= ALPHABET_SIZE;
+			}
+			this.otherStates = otherStates;
+		}
+
+		@Override
+		void keystream(final int[] positions, final int length, final byte[] offsets) {
+			long state = 0;
+			for (int r = count; r > 0; r--)
+				state = state * ALPHABET_SIZE + positions[r];
+			int c = run(restOf(state), positions[0], 0, length, offsets);
+			while (c < length) {
+				state = state + 1 == otherStates ? 0 : state + 1;
+				c = run(restOf(state), 0, c, length, offsets);
+			}
+		}
+
+		/**
+		 * @return the sum of the offsets of all rotors but the first in the given state, modulo the alphabet size
+		 */
+		private int restOf(long state) {
+			int rest = 0;
+			for (int r = 0; r < count; r++) {
+				rest += others[r * ALPHABET_SIZE + (int) (state % ALPHABET_SIZE)];
+				state /= ALPHABET_SIZE;
+			}
+			return rest % ALPHABET_SIZE;
+		}
+	}
+}
@@ -0,0 +1,209 @@
+package nz.ac.aut.hss.encrypt;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * En- or decrypts a text that is given in pieces, e.g. a file that is too large to be held in memory.
+ * The rotor state is carried from one piece to the next, so the result is the same as if the whole text was given
+ * at once.
+ * <p>
+ * Unlike {@link Enigma#encrypt(String, String)}, a session keeps everything that is not a letter as it is and
+ * does not move the rotors for it, so line breaks, spaces and punctuation survive. A text with anything but letters
+ * therefore results in other letters than with {@link Enigma#encrypt(String, String)}, only the letters of a text
+ * that consists of letters alone are the same. Letters of either case are en-/decrypted to upper-case ciphertext and
+ * lower-case plaintext respectively.
+ * Byte streams are read as ASCII, all other bytes (e.g. of multi-byte UTF-8 characters) are kept as they are.
+ * <p>
+ * A session is not thread-safe.
+ */
+public class EnigmaSession {
+	private static final int ALPHABET_SIZE = Enigma.ALPHABET.length;
+	/** Size of the buffers used to transfer streams */
+	private static final int BUFFER_SIZE = 1 << 16;
+	/** Amount of offsets that are computed ahead of the letters */
+	private static final int KEYSTREAM_SIZE = 1 << 12;
+	/** Output character for every offset (major) and input character (minor) */
+	private final byte[] table;
+	/** First character of the output alphabet, i.e. the case of the output */
+	private final char base;
+	private final EnigmaKernel kernel;
+	/** Rotor positions of the key */
+	private final int[] start;
+	private final int[] positions;
+	/** Offsets of the next letters, from index next (inclusive) to available (exclusive) */
+	private byte[] keystream = new byte[0];
+	private int next, available;
+	private long letters;
+	private char[] chars;
+	private ByteBuffer input, output;
+
+	/**
+	 * @param machine the machine whose rotors to use
+	 * @param key the valid key
+	 * @param encrypt true to encrypt, false to decrypt
+	 */
+	EnigmaSession(final Enigma machine, final String key, final boolean encrypt) {
+		final int rotors = machine.getRotors();
+		this.table = new byte[ALPHABET_SIZE * ALPHABET_SIZE];
+		for (int offset = 0; offset < ALPHABET_SIZE; offset++) {
+			for (int symbol = 0; symbol < ALPHABET_SIZE; symbol++) {
+				table[offset * ALPHABET_SIZE + symbol] = (byte) (encrypt
+						? machine.encryptSymbol(symbol, offset) : machine.decryptSymbol(symbol, offset));
+			}
+		}
+		this.base = encrypt ? 'A' : 'a';
+		this.kernel = machine.getKernel();
+		this.start = new int[rotors];
+		this.positions = new int[rotors];
+		for (int r = 0; r < rotors; r++) {
+			start[r] = key.charAt(r) - 'A';
+		}
+	}
+
+	/**
+	 * Continues the session at another position of the text, e.g. to en-/decrypt only a part of it.
+	 * @param letters the amount of letters before the position in the text
+	 * @see Enigma#seek(String, long)
+	 */
+	public void seek(final long letters) {
+		if (letters < 0)
+			throw new IllegalArgumentException("Amount of letters must not be negative");
+		this.letters = letters;
+		next = available = 0;
+	}
+
+	/**
+	 * @return the amount of letters en-/decrypted so far, i.e. how often the rotors have moved, plus the position
+	 * that the session was moved to by {@link #seek(long)}
+	 */
+	public long getLetters() {
+		return letters;
+	}
+
+	/**
+	 * @param c a character of the input
+	 * @param remaining the amount of characters of the input from this one on, i.e. the most letters to compute the
+	 * keystream for
+	 * @return the en-/decrypted letter or the character itself if it is not a letter
+	 */
+	private int convert(final int c, final int remaining) {
+		final int symbol;
+		if (c >= 'A' && c <= 'Z')
+			symbol = c - 'A';
+		else if (c >= 'a' && c <= 'z')
+			symbol = c - 'a';
+		else
+			return c;
+		if (next == available)
+			computeKeystream(Math.min(remaining, KEYSTREAM_SIZE));
+		letters++;
+		return base + table[keystream[next++] * ALPHABET_SIZE + symbol];
+	}
+
+	/**
+	 * Computes the offsets of the next letters at once, starting with the rotor positions after the letters so far.
+	 * @param length the amount of offsets to compute
+	 */
+	private void computeKeystream(final int length) {
+		long carry = letters;
+		for (int r = 0; r < positions.length; r++) {
+			final long position = start[r] + carry;
+			positions[r] = (int) (position % ALPHABET_SIZE);
+			carry = position / ALPHABET_SIZE;
+		}
+		if (keystream.length < length)
+			keystream = new byte[length];
+		kernel.keystream(positions, length, keystream);
+		next = 0;
+		available = length;
+	}
+
+	/**
+	 * En-/decrypts the next piece of the text.
+	 * @param text the next piece
+	 * @return the en-/decrypted piece
+	 */
+	public String update(final String text) {
+		final char[] chars = text.toCharArray();
+		update(chars, 0, chars.length, chars, 0);
+		return new String(chars);
+	}
+
+	/**
+	 * En-/decrypts the next piece of the text.
+	 * @param input the array holding the piece
+	 * @param from the index of the first character of the piece
+	 * @param length the length of the piece
+	 * @param output the array receiving the en-/decrypted piece, may be the input array
+	 * @param to the index in the output array to write the first character to
+	 */
+	public void update(final char[] input, final int from, final int length, final char[] output, final int to) {
+		for (int i = 0; i < length; i++)
+			output[to + i] = (char) convert(input[from + i], length - i);
+	}
+
+	/**
+	 * En-/decrypts as many bytes from the input as fit into the output.
+	 * @param input the buffer holding the next bytes of the text as ASCII
+	 * @param output the buffer receiving the en-/decrypted bytes, may be the input buffer
+	 */
+	public void update(final ByteBuffer input, final ByteBuffer output) {
+		final int length = Math.min(input.remaining(), output.remaining());
+		for (int i = 0; i < length; i++)
+			output.put((byte) convert(input.get() & 0xFF, length - i));
+	}
+
+	/**
+	 * En-/decrypts everything from the reader to the writer in constant memory.
+	 * Neither stream is closed, the writer is flushed.
+	 * @param reader the text to en-/decrypt
+	 * @param writer receives the en-/decrypted text
+	 * @return the amount of characters transferred
+	 * @throws IOException if the text could not be read or written
+	 */
+	public long transfer(final Reader reader, final Writer writer) throws IOException {
+		if (chars == null)
+			chars = new char[BUFFER_SIZE];
+		long transferred = 0;
+		int read;
+		while ((read = reader.read(chars)) >= 0) {
+			update(chars, 0, read, chars, 0);
+			writer.write(chars, 0, read);
+			transferred += read;
+		}
+		writer.flush();
+		return transferred;
+	}
+
+	/**
+	 * En-/decrypts everything from the source to the target channel in constant memory.
+	 * Neither channel is closed.
+	 * @param source the text to en-/decrypt as ASCII
+	 * @param target receives the en-/decrypted text
+	 * @return the amount of bytes transferred
+	 * @throws IOException if the text could not be read or written
+	 */
+	public long transfer(final ReadableByteChannel source, final WritableByteChannel target) throws IOException {
+		if (input == null) {
+			input = ByteBuffer.allocateDirect(BUFFER_SIZE);
+			output = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		}
+		long transferred = 0;
+		input.clear();
+		while (source.read(input) >= 0) {
+			input.flip();
+			output.clear();
+			update(input, output);
+			output.flip();
+			while (output.hasRemaining())
+				transferred += target.write(output);
+			input.compact();
+		}
+		return transferred;
+	}
+}
@@ -0,0 +1,219 @@
+package nz.ac.aut.hss.encrypt;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * En-/decrypts large texts in chunks on several threads, with the same result as an {@link EnigmaSession}.
+ * <p>
+ * Only letters move the rotors, so the letters of each chunk are counted first. Each chunk then starts with the
+ * rotor positions after all letters before it (see {@link Enigma#seek(String, long)}), independent of the other
+ * chunks. All en-/decryptions of a cipher, e.g. the blocks of {@link #transfer}, share the threads of one pool.
+ */
+public class ParallelCipher {
+	/** Amount of characters that one task en-/decrypts */
+	private static final int CHUNK_SIZE = 1 << 18;
+	/** Amount of bytes that are read from a channel at once */
+	private static final int BLOCK_SIZE = 1 << 24;
+	private final Enigma machine;
+	/** Pool shared by all en-/decryptions, its workers are daemon threads that terminate when they are idle */
+	private final ForkJoinPool pool;
+
+	/**
+	 * @param machine the machine whose rotors to use
+	 * @param threads the amount of threads to en-/decrypt with
+	 */
+	public ParallelCipher(final Enigma machine, final int threads) {
+		if (threads <= 0)
+			throw new IllegalArgumentException("Amount of threads must be positive");
+		this.machine = machine;
+		this.pool = new ForkJoinPool(threads);
+	}
+
+	/**
+	 * @param text the text to encrypt
+	 * @param key the key consisting of upper-case alpha characters only
+	 * @return the ciphertext
+	 * @see Enigma#encryptSession(String)
+	 */
+	public String encrypt(final String text, final String key) {
+		final char[] chars = text.toCharArray();
+		update(chars, 0, chars.length, key, 0, true);
+		return new String(chars);
+	}
+
+	/**
+	 * @param text the text to decrypt
+	 * @param key the key consisting of upper-case alpha characters only
+	 * @return the plaintext
+	 * @see Enigma#decryptSession(String)
+	 */
+	public String decrypt(final String text, final String key) {
+		final char[] chars = text.toCharArray();
+		update(chars, 0, chars.length, key, 0, false);
+		return new String(chars);
+	}
+
+	/**
+	 * En-/decrypts a part of a text in place.
+	 * @param text the array holding the text
+	 * @param from the index of the first character to en-/decrypt
+	 * @param to the index after the last character to en-/decrypt
+	 * @param key the key consisting of upper-case alpha characters only
+	 * @param letters the amount of letters in the text before the part
+	 * @param encrypt true to encrypt, false to decrypt
+	 * @return the amount of letters in the part
+	 */
+	public long update(final char[] text, final int from, final int to, final String key, final long letters,
+					   final boolean encrypt) {
+		return pool.invoke(new Chunks(to - from, key, letters, encrypt) {
+			@Override
+			long count(final int start, final int end) {
+				long letters = 0;
+				for (int i = from + start; i < from + end; i++)
+					letters += isLetter(text[i]) ? 1 : 0;
+				return letters;
+			}
+
+			@Override
+			void update(final EnigmaSession session, final int start, final int end) {
+				session.update(text, from + start, end - start, text, from + start);
+			}
+		});
+	}
+
+	/**
+	 * En-/decrypts a part of an ASCII text in place.
+	 * @param text the array holding the text
+	 * @param from the index of the first byte to en-/decrypt
+	 * @param to the index after the last byte to en-/decrypt
+	 * @param key the key consisting of upper-case alpha characters only
+	 * @param letters the amount of letters in the text before the part
+	 * @param encrypt true to encrypt, false to decrypt
+	 * @return the amount of letters in the part
+	 */
+	public long update(final byte[] text, final int from, final int to, final String key, final long letters,
+					   final boolean encrypt) {
+		return pool.invoke(new Chunks(to - from, key, letters, encrypt) {
+			@Override
+			long count(final int start, final int end) {
+				long letters = 0;
+				for (int i = from + start; i < from + end; i++)
+					letters += isLetter(text[i]) ? 1 : 0;
+				return letters;
+			}
+
+			@Override
+			void update(final EnigmaSession session, final int start, final int end) {
+				final ByteBuffer buffer = ByteBuffer.wrap(text, from + start, end - start);
+				session.update(buffer.duplicate(), buffer);
+			}
+		});
+	}
+
+	/**
+	 * En-/decrypts everything from the source to the target channel in blocks of constant size.
+	 * Neither channel is closed.
+	 * @param source the text to en-/decrypt as ASCII
+	 * @param target receives the en-/decrypted text
+	 * @param key the key consisting of upper-case alpha characters only
+	 * @param encrypt true to encrypt, false to decrypt
+	 * @return the amount of letters transferred
+	 * @throws IOException if the text could not be read or written
+	 */
+	public long transfer(final ReadableByteChannel source, final WritableByteChannel target, final String key,
+						 final boolean encrypt) throws IOException {
+		final byte[] block = new byte[BLOCK_SIZE];
+		final ByteBuffer buffer = ByteBuffer.wrap(block);
+		long letters = 0;
+		boolean end = false;
+		while (!end) {
+			buffer.clear();
+			while (buffer.hasRemaining() && !end)
+				end = source.read(buffer) < 0;
+			buffer.flip();
+			letters += update(block, 0, buffer.limit(), key, letters, encrypt);
+			while (buffer.hasRemaining())
+				target.write(buffer);
+		}
+		return letters;
+	}
+
+	private static boolean isLetter(final int c) {
+		return c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z';
+	}
+
+	/**
+	 * Counts the letters of all chunks, then en-/decrypts them with the rotor positions after the letters before.
+	 */
+	private abstract class Chunks extends RecursiveTask<Long> {
+		private static final long serialVersionUID = 1L;
+		private final int length;
+		private final String key;
+		private final long letters;
+		private final boolean encrypt;
+
+		private Chunks(final int length, final String key, final long letters, final boolean encrypt) {
+			this.length = length;
+			this.key = key;
+			this.letters = letters;
+			this.encrypt = encrypt;
+		}
+
+		/**
+		 * @return the amount of letters in the characters from start (inclusive) to end (exclusive)
+		 */
+		abstract long count(int start, int end);
+
+		/**
+		 * En-/decrypts the characters from start (inclusive) to end (exclusive) in place.
+		 */
+		abstract void update(EnigmaSession session, int start, int end);
+
+		private int end(final int chunk) {
+			return (int) Math.min((chunk + 1L) * CHUNK_SIZE, length);
+		}
+
+		@Override
+		protected Long compute() {
+			final int chunks = (int) ((length + (long) CHUNK_SIZE - 1) / CHUNK_SIZE);
+			final long[] counts = new long[chunks];
+			final List<RecursiveAction> tasks = new ArrayList<>(chunks);
+			for (int c = 0; c < chunks; c++) {
+				final int chunk = c;
+				tasks.add(new RecursiveAction() {
+					@Override
+					protected void compute() {
+						counts[chunk] = count(chunk * CHUNK_SIZE, end(chunk));
+					}
+				});
+			}
+			invokeAll(tasks);
+			tasks.clear();
+			long position = letters;
+			for (int c = 0; c < chunks; c++) {
+				final int chunk = c;
+				final long start = position;
+				tasks.add(new RecursiveAction() {
+					@Override
+					protected void compute() {
+						final EnigmaSession session = encrypt ? machine.encryptSession(key)
+								: machine.decryptSession(key);
+						session.seek(start);
+						update(session, chunk * CHUNK_SIZE, end(chunk));
+					}
+				});
+				position += counts[c];
+			}
+			invokeAll(tasks);
+			return position - letters;
+		}
+	}
+}
@@ -12,47 +12,61 @@ public class ReflectorEnigma extends Enigma {
 		super(rotors);
 	}
 
+	/**
+	 * @param rotorOrder the index of each rotor in {@link #ALPHABET_SCRAMBLED}, each rotor may be used once
+	 */
+	public ReflectorEnigma(final int[] rotorOrder) {
+		super(rotorOrder);
+	}
+
+	@Override
+	public Enigma withRotorOrder(final int[] rotorOrder) {
+		return new ReflectorEnigma(rotorOrder);
+	}
+
 	/**
 	 * Encrypt a text using reflector. Also used for decrypting.
 	 * If 3 rotor was used, this algorithm will use total of 7 rotors.
-	 * 3 rotor + reflector + 3 rotor backwards.
+	 * 3 rotor + reflector + 3 rotor backwards, i.e. the offsets of all rotors are added, the sum is reflected and
+	 * the offsets are subtracted again (see {@link #decryptSymbol(int, int)}).
 	 * @param input the plain- or ciphertext
+	 * @param rotorPositions the initial position of each rotor
 	 * @return encrypted or decrypted text
 	 */
-	private String convertWithReflector(String input) {
+	private String convertWithReflector(String input, final int[] rotorPositions) {
 		char[] chars = input.toCharArray();
+		final byte[] offsets = new byte[chars.length];
+		keystream(rotorPositions, chars.length, offsets);
 		for (int c = 0; c < chars.length; c++) {
-			int index = chars[c] - 'A';
-			//Forwards
-			for(int i = 0; i < rotorPositions.length;i++){
-				index = index + (rotors[i][rotorPositions[i]] - 'A');
-			}
-			index %= ALPHABET.length;
-			//Reflector
-			index = REFLECTOR[index] - 'A';
-			//Backwards
-			for(int i = rotorPositions.length-1; 0 <= i;i--){
-				index = index - (rotors[i][rotorPositions[i]] - 'A');
-			}
-			index %= ALPHABET.length;
-			if (index < 0)
-				index += ALPHABET.length;
-			//Done
-			chars[c] = ALPHABET[index];
-			rotorTick();
+			chars[c] = ALPHABET[decryptSymbol(chars[c] - 'A', offsets[c])];
 		}
 		return new String(chars);
 	}
 
+	/**
+	 * The reflector makes encryption and decryption the same.
+	 */
+	@Override
+	public int encryptSymbol(final int symbol, final int offset) {
+		return decryptSymbol(symbol, offset);
+	}
+
+	@Override
+	public int decryptSymbol(final int symbol, final int offset) {
+		int index = REFLECTOR[(symbol + offset) % ALPHABET.length] - 'A' - offset;
+		index %= ALPHABET.length;
+		if (index < 0)
+			index += ALPHABET.length;
+		return index;
+	}
+
 	@Override
 	public String encrypt(String plaintext, String Key) {
-		applyRotations(Key);
-		return convertWithReflector(plaintext.toUpperCase());
+		return convertWithReflector(plaintext.toUpperCase(), applyRotations(Key));
 	}
 
 	@Override
 	public String decrypt(String cipherText, String key) {
-		applyRotations(key);
-		return convertWithReflector(cipherText.toUpperCase()).toLowerCase();
+		return convertWithReflector(cipherText.toUpperCase(), applyRotations(key)).toLowerCase();
 	}
 }
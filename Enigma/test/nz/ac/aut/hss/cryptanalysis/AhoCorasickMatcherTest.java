@@ -0,0 +1,62 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+
+public class AhoCorasickMatcherTest {
+	private static final String[] WORDS = {"he", "she", "his", "hers", "e", "ers", "sh", "hishe"};
+
+	@Test
+	public void firstWordTakesPrecedence() {
+		// "he" comes before "hers" in the dictionary, so "hers" is never matched and "rs" is left
+		assertEquals(1, sum("hers", new long[]{1, 0, 0, 1000, 0, 10, 0, 0}), 0);
+	}
+
+	@Test
+	public void equalsRegularExpression() {
+		final long[] values = new long[WORDS.length];
+		for (int i = 0; i < values.length; i++)
+			values[i] = 1L << i;
+		final Pattern pattern = Pattern.compile(join(WORDS));
+		final Random random = new Random(42);
+		for (int t = 0; t < 1000; t++) {
+			final StringBuilder text = new StringBuilder();
+			final int length = random.nextInt(40);
+			for (int i = 0; i < length; i++)
+				text.append("hers -".charAt(random.nextInt(6)));
+			double expected = 0;
+			final Matcher matcher = pattern.matcher(text);
+			while (matcher.find()) {
+				for (int w = 0; w < WORDS.length; w++) {
+					if (WORDS[w].equals(matcher.group()))
+						expected += values[w];
+				}
+			}
+			assertEquals(text.toString(), expected, sum(text.toString(), values), 0);
+		}
+	}
+
+	private double sum(final String text, final long[] values) {
+		final byte[] symbols = new byte[text.length()];
+		for (int i = 0; i < symbols.length; i++) {
+			final char c = text.charAt(i);
+			symbols[i] = c >= 'a' && c <= 'z' ? (byte) (c - 'a') : -1;
+		}
+		return new AhoCorasickMatcher(WORDS, values).sumOfMatches(symbols, 0, symbols.length);
+	}
+
+	private String join(final String[] words) {
+		final StringBuilder regex = new StringBuilder();
+		for (String word : words) {
+			if (regex.length() > 0)
+				regex.append('|');
+			regex.append(word);
+		}
+		return regex.toString();
+	}
+}
@@ -0,0 +1,53 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+import nz.ac.aut.hss.encrypt.Enigma;
+import nz.ac.aut.hss.encrypt.ReflectorEnigma;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BigramIndexCalculatorTest {
+	private static final String[] PLAINTEXTS = {
+			"intelligencepointstoattackontheeastwallofthecastleatdawn",
+			"togeneraloberzalekxnothingtoreport",
+			"theweatherforecastfortodayisrainfollowedbyclearskiesintheevening"
+	};
+	private static BigramIndexCalculator bigram;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		bigram = new BigramIndexCalculator();
+	}
+
+	@Test
+	public void scoresAllBigrams() {
+		// "TH" is the most and "QZ" one of the least frequent bigrams
+		assertTrue(bigram.valueOf("TH") > bigram.valueOf("QZ"));
+		assertEquals(bigram.valueOf("TH") + bigram.valueOf("HE"), bigram.valueOf("THE"), 1e-9);
+		assertEquals(0, bigram.valueOf("T"), 0);
+		for (String plaintext : PLAINTEXTS) {
+			final byte[] symbols = EnigmaAnalyzer.symbolsOf(plaintext.toUpperCase());
+			double expected = 0;
+			for (int i = 0; i + 2 <= plaintext.length(); i++)
+				expected += bigram.valueOf(plaintext.substring(i, i + 2).toUpperCase());
+			final double score = bigram.valueOf(symbols, 0, symbols.length);
+			assertEquals(expected, score, 1e-9);
+			assertEquals(score, bigram.valueOf(symbols, 0, symbols.length, score - 1), 0);
+			assertTrue(bigram.valueOf(symbols, 0, symbols.length, score + 1) < score + 1);
+		}
+	}
+
+	@Test
+	public void findsKeysOfBigramCalculator() throws Exception {
+		final BigramCalculator counts = new BigramCalculator();
+		for (Enigma enigma : new Enigma[]{new Enigma(3), new ReflectorEnigma(3)}) {
+			for (String plaintext : PLAINTEXTS) {
+				final String ciphertext = enigma.encrypt(plaintext, "HSS");
+				if ("HSS".equals(new EnigmaAnalyzer(enigma, 1, counts).findKey(ciphertext)))
+					assertEquals("HSS", new EnigmaAnalyzer(enigma, 1, bigram).findKey(ciphertext));
+			}
+		}
+	}
+}
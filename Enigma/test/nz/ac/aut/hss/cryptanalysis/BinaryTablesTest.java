@@ -0,0 +1,44 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class BinaryTablesTest {
+	@Test
+	public void binaryName() {
+		assertEquals("qgram.bin", BinaryTables.binaryName("qgram.txt"));
+		assertEquals("bigrams.bin", BinaryTables.binaryName("bigrams.csv"));
+	}
+
+	@Test
+	public void values() throws Exception {
+		final float[] values = {-1.5f, -9.5f, 0, Float.MIN_VALUE};
+		final FloatBuffer read = BinaryTables.readValues(BinaryTables.writeValues(FloatBuffer.wrap(values)));
+		assertEquals(values.length, read.limit());
+		for (int i = 0; i < values.length; i++)
+			assertEquals(values[i], read.get(i), 0);
+	}
+
+	@Test
+	public void words() throws Exception {
+		final Map<String, Long> frequencies = new LinkedHashMap<>();
+		frequencies.put("the", 53097401461L);
+		frequencies.put("th", 2L);
+		frequencies.put("e", 1L);
+		final ByteBuffer table = BinaryTables.writeWords(frequencies);
+		final AhoCorasickMatcher matcher = BinaryTables.readWords(table);
+		// t-h-e-e
+		assertEquals(53097401461L + 1, matcher.sumOfMatches(new byte[]{19, 7, 4, 4}, 0, 4), 0);
+	}
+
+	@Test
+	public void resourcesAreBinary() throws Exception {
+		assertEquals(BinaryTables.MAGIC, BinaryTables.load("qgram.bin").getInt(0));
+	}
+}
@@ -0,0 +1,50 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+import nz.ac.aut.hss.encrypt.Enigma;
+import nz.ac.aut.hss.encrypt.ReflectorEnigma;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class CorrelationAnalyzerTest {
+	private static final String PLAINTEXT = "intelligencepointstoattackontheeastwallofthecastleatdawn";
+
+	@Test
+	public void correlationEqualsLetterFrequencies() throws Exception {
+		final Enigma enigma = new ReflectorEnigma(3);
+		final CorrelationAnalyzer analyzer = new CorrelationAnalyzer(enigma, 1);
+		final KeystreamTable table = new KeystreamTable(enigma);
+		final byte[] decryption = enigma.getDecryptionTable();
+		final LetterFrequencyScore letterScore = new LetterFrequencyScore();
+		final byte[] symbols = EnigmaAnalyzer.symbolsOf(enigma.encrypt(PLAINTEXT, "HSS"));
+		final CorrelationAnalyzer.Correlation correlation = analyzer.new Correlation(symbols);
+		final double[] scores = new double[correlation.step()];
+		final byte[] plaintext = new byte[symbols.length];
+		// the last block wraps around the offset sequence
+		for (long from : new long[]{0, 5000, table.length() - 10}) {
+			correlation.scores(from, scores);
+			for (int t = 0; t < scores.length; t++) {
+				for (int i = 0; i < symbols.length; i++)
+					plaintext[i] = decryption[table.offsetAt(from + t + i) * 26 + symbols[i]];
+				assertEquals(letterScore.valueOf(plaintext, 0, plaintext.length), scores[t], 1e-9);
+			}
+		}
+	}
+
+	@Test
+	public void enigma() throws Exception {
+		test(new Enigma(3), "MAS");
+	}
+
+	@Test
+	public void reflectorEnigma() throws Exception {
+		test(new ReflectorEnigma(3), "HSS");
+	}
+
+	private void test(final Enigma enigma, final String key) throws Exception {
+		final String ciphertext = enigma.encrypt(PLAINTEXT, key);
+		final String analyzedKey = new CorrelationAnalyzer(enigma, 1000).findKey(ciphertext);
+		assertEquals(key, analyzedKey);
+		assertEquals(PLAINTEXT, enigma.decrypt(ciphertext, analyzedKey));
+	}
+}
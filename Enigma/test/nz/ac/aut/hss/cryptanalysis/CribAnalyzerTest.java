@@ -0,0 +1,53 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+import nz.ac.aut.hss.encrypt.Enigma;
+import nz.ac.aut.hss.encrypt.ReflectorEnigma;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CribAnalyzerTest {
+	private static final String PLAINTEXT = "intelligencepointstoattackontheeastwallofthecastleatdawn";
+
+	@Test
+	public void enigma() throws Exception {
+		test(new Enigma(3), "MAS");
+	}
+
+	@Test
+	public void reflectorEnigma() throws Exception {
+		test(new ReflectorEnigma(3), "HSS");
+	}
+
+	@Test
+	public void fiveRotors() throws Exception {
+		test(new ReflectorEnigma(5), "HSSAU");
+	}
+
+	@Test
+	public void allMatchingKeys() throws Exception {
+		final Enigma enigma = new ReflectorEnigma(3);
+		final String ciphertext = enigma.encrypt(PLAINTEXT, "AUT");
+		final CribAnalyzer analyzer = new CribAnalyzer(enigma, "east", 0, 40, new LetterFrequencyScore());
+		final List<Candidate> candidates = analyzer.findCandidates(ciphertext, (int) KeySpace.size(3));
+		int matching = 0;
+		for (long num = 0; num < KeySpace.size(3); num++) {
+			final String plaintext = enigma.decrypt(ciphertext, KeySpace.keyOf(num, 3));
+			final int position = plaintext.indexOf("east");
+			if (position >= 0 && position <= 40)
+				matching++;
+		}
+		assertEquals(matching, candidates.size());
+		for (Candidate candidate : candidates)
+			assertTrue(enigma.decrypt(ciphertext, candidate.getKey()).substring(0, 44).contains("east"));
+	}
+
+	private void test(final Enigma enigma, final String key) throws Exception {
+		final String ciphertext = enigma.encrypt(PLAINTEXT, key);
+		final String analyzedKey = new CribAnalyzer(enigma, "attackon").findKey(ciphertext);
+		assertEquals(PLAINTEXT, enigma.decrypt(ciphertext, analyzedKey));
+	}
+}
@@ -1,10 +1,20 @@
 package nz.ac.aut.hss.cryptanalysis;
 
 import nz.ac.aut.hss.encrypt.Enigma;
+import nz.ac.aut.hss.encrypt.ReflectorEnigma;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class EnigmaAnalyzerTest {
 	private static EnigmaAnalyzer analyzer;
@@ -50,6 +60,133 @@ public class EnigmaAnalyzerTest {
 		test(plaintext, "MAS");
 	}
 
+	@Test
+	public void parallelEqualsSequential() throws Exception {
+		final Enigma enigma = new ReflectorEnigma(3);
+		final String ciphertext = enigma.encrypt("intelligencepointstoattackontheeastwallofthecastleatdawn", "HSS");
+		final String sequentialKey = new EnigmaAnalyzer(enigma).findKey(ciphertext);
+		final String parallelKey = new EnigmaAnalyzer(enigma, 4).findKey(ciphertext);
+		assertEquals(sequentialKey, parallelKey);
+	}
+
+	@Test
+	public void candidates() throws Exception {
+		final Enigma enigma = new Enigma(2);
+		final String ciphertext = enigma.encrypt("intelligencepointstoattackontheeastwallofthecastleatdawn", "HS");
+		final List<Candidate> candidates = new EnigmaAnalyzer(enigma, 2).findCandidates(ciphertext, 10);
+		assertEquals(10, candidates.size());
+		assertEquals("HS", candidates.get(0).getKey());
+		for (int i = 1; i < candidates.size(); i++)
+			assertTrue(candidates.get(i).getScore() <= candidates.get(i - 1).getScore());
+	}
+
+	@Test
+	public void boundedEqualsUnbounded() throws Exception {
+		final Enigma enigma = new Enigma(3);
+		final String ciphertext = enigma.encrypt("intelligencepointstoattackontheeastwallofthecastleatdawn", "HSS");
+		final QgramIndexCalculator qgram = new QgramIndexCalculator();
+		final TextScore unbounded = new TextScore() {
+			@Override
+			public double valueOf(final String text) {
+				return qgram.valueOf(text);
+			}
+
+			@Override
+			public double valueOf(final byte[] text, final int from, final int to) {
+				return qgram.valueOf(text, from, to);
+			}
+		};
+		final String boundedKey = new EnigmaAnalyzer(enigma, 1, qgram).findKey(ciphertext);
+		assertEquals(new EnigmaAnalyzer(enigma, 1, unbounded).findKey(ciphertext), boundedKey);
+		assertEquals("HSS", boundedKey);
+	}
+
+	@Test
+	public void batchEqualsSingle() throws Exception {
+		final Enigma enigma = new ReflectorEnigma(3);
+		final List<String> ciphertexts = Arrays.asList(
+				enigma.encrypt("intelligencepointstoattackontheeastwallofthecastleatdawn", "HSS"),
+				enigma.encrypt("togeneraloberzalekxnothingtoreport", "MAS"),
+				enigma.encrypt("theenemyisretreatingtowardstheriver", "AUT"));
+		final EnigmaAnalyzer analyzer = new EnigmaAnalyzer(enigma, 2);
+		final List<String> keys = analyzer.findKeys(ciphertexts);
+		assertEquals(ciphertexts.size(), keys.size());
+		for (int i = 0; i < ciphertexts.size(); i++)
+			assertEquals(analyzer.findKey(ciphertexts.get(i)), keys.get(i));
+	}
+
+	@Test
+	public void attackEqualsFindKey() throws Exception {
+		final Enigma enigma = new Enigma(3);
+		final String ciphertext = enigma.encrypt("intelligencepointstoattackontheeastwallofthecastleatdawn", "HSS");
+		final List<AttackProgress> reports = new CopyOnWriteArrayList<>();
+		final Attack attack = analyzer.attack(ciphertext, 0, new ProgressListener() {
+			@Override
+			public void progressed(final AttackProgress progress) {
+				reports.add(progress);
+			}
+		});
+		assertEquals(analyzer.findKey(ciphertext), attack.get());
+		assertTrue(attack.isExhausted());
+		final AttackProgress last = reports.get(reports.size() - 1);
+		assertEquals(last.getTotalKeys(), last.getKeysTried());
+		assertEquals("HSS", last.getBestKey());
+	}
+
+	@Test(expected = CancellationException.class)
+	public void cancelledAttack() throws Exception {
+		final Enigma enigma = new Enigma(5);
+		final Attack attack = new EnigmaAnalyzer(enigma).attack(enigma.encrypt("attackatdawn", "HELLO"), 0, null);
+		assertTrue(attack.cancel(true));
+		assertTrue(attack.isDone());
+		attack.get();
+	}
+
+	@Test
+	public void attackWithTimeLimit() throws Exception {
+		final Enigma enigma = new Enigma(5);
+		final Attack attack = new EnigmaAnalyzer(enigma, 2).attack(enigma.encrypt("attackatdawn", "HELLO"), 50, null);
+		attack.get(10, TimeUnit.SECONDS);
+		assertFalse(attack.isCancelled());
+		assertFalse(attack.isExhausted());
+	}
+
+	@Test
+	public void resumeFromCheckpoint() throws Exception {
+		final Enigma enigma = new Enigma(4);
+		final String ciphertext = enigma.encrypt("intelligencepointstoattackontheeastwallofthecastleatdawn", "HSSA");
+		final EnigmaAnalyzer analyzer = new EnigmaAnalyzer(enigma);
+		final File file = File.createTempFile("enigma", ".checkpoint");
+		try {
+			final Attack interrupted = analyzer.attack(ciphertext, 100, null, file, false);
+			interrupted.get();
+			final Checkpoint checkpoint = Checkpoint.read(file);
+			assertFalse(checkpoint.isComplete());
+			final Attack resumed = analyzer.attack(ciphertext, 0, null, file, true);
+			assertEquals(checkpoint.getFrontier(), resumed.getProgress().getKeysTried());
+			assertEquals(analyzer.findKey(ciphertext), resumed.get());
+			assertTrue(Checkpoint.read(file).isComplete());
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void cascade() throws Exception {
+		final Enigma enigma = new ReflectorEnigma(3);
+		final String ciphertext = enigma.encrypt("intelligencepointstoattackontheeastwallofthecastleatdawn", "HSS");
+		final EnigmaAnalyzer analyzer = new EnigmaAnalyzer(enigma, 2, new ScoringCascade(
+				new ScoringCascade.Stage(new LetterFrequencyScore(), 500, 0),
+				new ScoringCascade.Stage(new QgramIndexCalculator())));
+		assertEquals("HSS", analyzer.findKey(ciphertext));
+		final List<StageStatistics> statistics = analyzer.getStatistics();
+		assertEquals(2, statistics.size());
+		assertEquals(KeySpace.size(3), statistics.get(0).getRated());
+		assertEquals(500, statistics.get(0).getSurvivors());
+		assertEquals(500, statistics.get(1).getRated());
+		assertEquals(1, statistics.get(1).getSurvivors());
+	}
+
 	private void test(final String plaintext, final String key) {
 		final Enigma enigma = new Enigma(3);
 		final String ciphertext = enigma.encrypt(plaintext, key);
@@ -0,0 +1,36 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+import nz.ac.aut.hss.encrypt.Enigma;
+import nz.ac.aut.hss.encrypt.ReflectorEnigma;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class HillClimbingAnalyzerTest {
+	private static final String PLAINTEXT = "intelligencepointstoattackontheeastwallofthecastleatdawn";
+	private static final long SEED = 42;
+
+	@Test
+	public void sixRotors() throws Exception {
+		test(new Enigma(6), "MASHSS");
+	}
+
+	@Test
+	public void eightReflectedRotors() throws Exception {
+		test(new ReflectorEnigma(8), "HIGHSECR");
+	}
+
+	@Test
+	public void sameKeyOnAnyAmountOfThreads() throws Exception {
+		final Enigma enigma = new Enigma(6);
+		final String ciphertext = enigma.encrypt(PLAINTEXT, "MASHSS");
+		assertEquals(new HillClimbingAnalyzer(enigma, 1, 20, 0, SEED).findKey(ciphertext),
+				new HillClimbingAnalyzer(enigma, 3, 20, 0, SEED).findKey(ciphertext));
+	}
+
+	private void test(final Enigma enigma, final String key) throws Exception {
+		final String ciphertext = enigma.encrypt(PLAINTEXT, key);
+		final String analyzedKey = new HillClimbingAnalyzer(enigma, 2, 50, 0, SEED).findKey(ciphertext);
+		assertEquals(PLAINTEXT, enigma.decrypt(ciphertext, analyzedKey));
+	}
+}
@@ -0,0 +1,41 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+import nz.ac.aut.hss.encrypt.Enigma;
+import nz.ac.aut.hss.encrypt.ReflectorEnigma;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class KeystreamAnalyzerTest {
+	private static final String PLAINTEXT = "intelligencepointstoattackontheeastwallofthecastleatdawn";
+
+	@Test
+	public void keystreamEqualsMachine() throws Exception {
+		final Enigma enigma = new Enigma(3);
+		final KeystreamTable table = new KeystreamTable(enigma);
+		final String key = "ZZX";
+		// encrypting A's yields the plain offsets
+		final String ciphertext = enigma.encrypt("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa", key);
+		final long state = KeySpace.stateOf(('Z' - 'A') * 26 * 26 + ('Z' - 'A') * 26 + ('X' - 'A'), 3);
+		for (int i = 0; i < ciphertext.length(); i++) {
+			assertEquals(ciphertext.charAt(i) - 'A', table.offsetAt(state + i));
+		}
+	}
+
+	@Test
+	public void enigma() throws Exception {
+		test(new Enigma(3), "MAS");
+	}
+
+	@Test
+	public void reflectorEnigma() throws Exception {
+		test(new ReflectorEnigma(3), "HSS");
+	}
+
+	private void test(final Enigma enigma, final String key) throws Exception {
+		final String ciphertext = enigma.encrypt(PLAINTEXT, key);
+		final String analyzedKey = new KeystreamAnalyzer(enigma).findKey(ciphertext);
+		assertEquals(new EnigmaAnalyzer(enigma).findKey(ciphertext), analyzedKey);
+		assertEquals(PLAINTEXT, enigma.decrypt(ciphertext, analyzedKey));
+	}
+}
@@ -0,0 +1,65 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+import nz.ac.aut.hss.encrypt.Enigma;
+import nz.ac.aut.hss.encrypt.ReflectorEnigma;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QuantizedQgramCalculatorTest {
+	private static final String[] PLAINTEXTS = {
+			"intelligencepointstoattackontheeastwallofthecastleatdawn",
+			"togeneraloberzalekxnothingtoreport",
+			"theweatherforecastfortodayisrainfollowedbyclearskiesintheevening"
+	};
+	private static QgramIndexCalculator qgram;
+	private static QuantizedQgramCalculator quantized;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		qgram = new QgramIndexCalculator();
+		quantized = new QuantizedQgramCalculator();
+	}
+
+	@Test
+	public void scoresCloseToFloat() {
+		for (String plaintext : PLAINTEXTS) {
+			final byte[] symbols = EnigmaAnalyzer.symbolsOf(plaintext.toUpperCase());
+			final double score = qgram.valueOf(symbols, 0, symbols.length);
+			assertEquals(score, quantized.valueOf(symbols, 0, symbols.length), 1e-3);
+			assertEquals(quantized.valueOf(symbols, 0, symbols.length), quantized.valueOf(plaintext.toUpperCase()), 0);
+			// not aborted above the minimum, aborted below
+			assertEquals(quantized.valueOf(symbols, 0, symbols.length),
+					quantized.valueOf(symbols, 0, symbols.length, score - 1), 0);
+			assertTrue(quantized.valueOf(symbols, 0, symbols.length, score + 1) < score + 1);
+		}
+	}
+
+	@Test
+	public void longText() {
+		final StringBuilder text = new StringBuilder();
+		while (text.length() < 100000)
+			text.append(PLAINTEXTS[text.length() % PLAINTEXTS.length].toUpperCase());
+		final byte[] symbols = EnigmaAnalyzer.symbolsOf(text.toString());
+		assertEquals(qgram.valueOf(symbols, 0, symbols.length), quantized.valueOf(symbols, 0, symbols.length), 1);
+	}
+
+	@Test
+	public void rankingEqualsFloat() throws Exception {
+		final Enigma enigma = new ReflectorEnigma(3);
+		final EnigmaAnalyzer floatAnalyzer = new EnigmaAnalyzer(enigma, 1, qgram);
+		final EnigmaAnalyzer quantizedAnalyzer = new EnigmaAnalyzer(enigma, 1, quantized);
+		for (String plaintext : PLAINTEXTS) {
+			final String ciphertext = enigma.encrypt(plaintext, "HSS");
+			final List<Candidate> expected = floatAnalyzer.findCandidates(ciphertext, 10);
+			final List<Candidate> actual = quantizedAnalyzer.findCandidates(ciphertext, 10);
+			assertEquals(expected.size(), actual.size());
+			for (int i = 0; i < expected.size(); i++)
+				assertEquals(expected.get(i).getKey(), actual.get(i).getKey());
+		}
+	}
+}
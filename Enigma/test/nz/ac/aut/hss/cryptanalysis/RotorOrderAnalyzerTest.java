@@ -0,0 +1,51 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+import nz.ac.aut.hss.encrypt.Enigma;
+import nz.ac.aut.hss.encrypt.ReflectorEnigma;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class RotorOrderAnalyzerTest {
+	private static final String PLAINTEXT = "intelligencepointstoattackontheeastwallofthecastleatdawn";
+
+	@Test
+	public void findsRotorOrder() throws Exception {
+		final Enigma enigma = new ReflectorEnigma(new int[]{6, 1, 4});
+		final String ciphertext = enigma.encrypt(PLAINTEXT, "HSS");
+		final RotorOrderAnalyzer analyzer = new RotorOrderAnalyzer(new ReflectorEnigma(3), 2);
+		assertEquals(8 * 7 * 6, analyzer.getOrders());
+		final List<Candidate> candidates = analyzer.findCandidates(ciphertext, 1);
+		final RotorOrderCandidate candidate = (RotorOrderCandidate) candidates.get(0);
+		// the slowest rotor does not move during the text, so the first order with the same faster rotors is reported
+		assertEquals(PLAINTEXT, enigma.withRotorOrder(candidate.getRotorOrder()).decrypt(ciphertext,
+				candidate.getKey()));
+		assertEquals(Arrays.toString(new int[]{6, 1, 0}), Arrays.toString(candidate.getRotorOrder()));
+	}
+
+	@Test
+	public void findsMovingSlowestRotor() throws Exception {
+		final Enigma enigma = new ReflectorEnigma(new int[]{6, 1, 4});
+		final String ciphertext = enigma.encrypt(PLAINTEXT, "VZB"); // the slowest rotor moves after five letters
+		final RotorOrderCandidate candidate = (RotorOrderCandidate)
+				new RotorOrderAnalyzer(new ReflectorEnigma(3), 2).findCandidates(ciphertext, 1).get(0);
+		assertEquals(Arrays.toString(new int[]{6, 1, 4}), Arrays.toString(candidate.getRotorOrder()));
+		assertEquals("VZB", candidate.getKey());
+	}
+
+	@Test
+	public void bestScoreEqualsEnigmaAnalyzer() throws Exception {
+		final Enigma enigma = new Enigma(2);
+		final String ciphertext = enigma.encrypt(PLAINTEXT, "MA");
+		final QgramIndexCalculator qgram = ScoringTables.quadgrams();
+		final Candidate expected = new EnigmaAnalyzer(enigma, 1, qgram).findCandidates(ciphertext, 1).get(0);
+		final RotorOrderCandidate actual =
+				(RotorOrderCandidate) new RotorOrderAnalyzer(enigma, 3, qgram).findCandidates(ciphertext, 1).get(0);
+		assertEquals(expected.getScore(), actual.getScore(), 0);
+		assertEquals(enigma.decrypt(ciphertext, expected.getKey()),
+				enigma.withRotorOrder(actual.getRotorOrder()).decrypt(ciphertext, actual.getKey()));
+	}
+}
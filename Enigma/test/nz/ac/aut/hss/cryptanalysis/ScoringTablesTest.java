@@ -0,0 +1,59 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ScoringTablesTest {
+	@Test
+	public void loadsOnce() throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final List<Future<QgramIndexCalculator>> futures = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				futures.add(executor.submit(new Callable<QgramIndexCalculator>() {
+					@Override
+					public QgramIndexCalculator call() throws Exception {
+						return ScoringTables.quadgrams();
+					}
+				}));
+			}
+			for (Future<QgramIndexCalculator> future : futures)
+				assertSame(ScoringTables.quadgrams(), future.get());
+		} finally {
+			executor.shutdown();
+		}
+		LoadStatistics quadgrams = null;
+		for (LoadStatistics statistics : ScoringTables.getStatistics()) {
+			if (statistics.getScore().equals("quadgrams"))
+				quadgrams = statistics;
+		}
+		assertTrue(quadgrams.isLoaded());
+		assertTrue(quadgrams.getRequests() >= 16);
+		assertTrue(quadgrams.getNanos() > 0);
+	}
+
+	@Test
+	public void countsRequests() throws Exception {
+		final long requests = requestsOf("bigrams");
+		assertSame(ScoringTables.bigrams(), ScoringTables.bigrams());
+		assertEquals(requests + 2, requestsOf("bigrams"));
+	}
+
+	private static long requestsOf(final String score) {
+		for (LoadStatistics statistics : ScoringTables.getStatistics()) {
+			if (statistics.getScore().equals(score))
+				return statistics.getRequests();
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,137 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+import nz.ac.aut.hss.encrypt.Enigma;
+import nz.ac.aut.hss.encrypt.ReflectorEnigma;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+
+public class ShardCoordinatorTest {
+	@Test
+	public void shardsEqualSingleAnalyzer() throws Exception {
+		assertShardsEqualSingleAnalyzer(new ReflectorEnigma(3));
+	}
+
+	@Test
+	public void workersUseRotorOrder() throws Exception {
+		assertShardsEqualSingleAnalyzer(new ReflectorEnigma(new int[]{6, 1, 4}));
+	}
+
+	private void assertShardsEqualSingleAnalyzer(final Enigma enigma) throws Exception {
+		final String ciphertext = enigma.encrypt("intelligencepointstoattackontheeastwallofthecastleatdawn", "HSS");
+		final List<Candidate> expected = new EnigmaAnalyzer(enigma).findCandidates(ciphertext, 5);
+		try (ShardCoordinator coordinator = new ShardCoordinator(enigma, ciphertext, 5, 64, 0)) {
+			final int port = coordinator.getPort();
+			start(new Runnable() {
+				@Override
+				public void run() {
+					takeShardAndDie(port);
+				}
+			});
+			for (int i = 0; i < 2; i++) {
+				start(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							new ShardWorker("localhost", port, 1).run();
+						} catch (IOException e) {
+							throw new IllegalStateException(e);
+						}
+					}
+				});
+			}
+			final List<Candidate> candidates = coordinator.run();
+			assertEquals(expected.size(), candidates.size());
+			for (int i = 0; i < expected.size(); i++) {
+				assertEquals(expected.get(i).getKey(), candidates.get(i).getKey());
+				assertEquals(expected.get(i).getScore(), candidates.get(i).getScore(), 0);
+			}
+		}
+	}
+
+	@Test
+	public void hangingWorkerTimesOut() throws Exception {
+		final Enigma enigma = new ReflectorEnigma(2);
+		final String ciphertext = enigma.encrypt("intelligencepointstoattackontheeastwallofthecastleatdawn", "MA");
+		final List<Candidate> expected = new EnigmaAnalyzer(enigma).findCandidates(ciphertext, 3);
+		try (ShardCoordinator coordinator = new ShardCoordinator(enigma, ciphertext, 3, 16, 0, 200)) {
+			final int port = coordinator.getPort();
+			final CountDownLatch hanging = new CountDownLatch(1);
+			start(new Runnable() {
+				@Override
+				public void run() {
+					takeShardAndHang(port, hanging);
+				}
+			});
+			start(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						hanging.await(); // the hanging worker must get a shard first
+						new ShardWorker("localhost", port, 1).run();
+					} catch (IOException e) {
+						throw new IllegalStateException(e);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+			final List<Candidate> candidates = coordinator.run();
+			assertEquals(expected.size(), candidates.size());
+			for (int i = 0; i < expected.size(); i++)
+				assertEquals(expected.get(i).getKey(), candidates.get(i).getKey());
+		}
+	}
+
+	/**
+	 * Acts as a worker that takes a shard and disconnects without answering.
+	 */
+	private void takeShardAndDie(final int port) {
+		try (Socket socket = new Socket("localhost", port)) {
+			final DataInputStream in = new DataInputStream(socket.getInputStream());
+			in.readBoolean();
+			final int rotors = in.readInt();
+			for (int r = 0; r < rotors; r++)
+				in.readInt();
+			in.readFully(new byte[in.readInt()]);
+			in.readInt();
+			in.readByte();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Acts as a worker that takes a shard and stays connected without answering until it is dropped.
+	 */
+	private void takeShardAndHang(final int port, final CountDownLatch hanging) {
+		try (Socket socket = new Socket("localhost", port)) {
+			final DataInputStream in = new DataInputStream(socket.getInputStream());
+			in.readBoolean();
+			final int rotors = in.readInt();
+			for (int r = 0; r < rotors; r++)
+				in.readInt();
+			in.readFully(new byte[in.readInt()]);
+			in.readInt();
+			in.readByte();
+			in.readLong();
+			in.readLong();
+			hanging.countDown();
+			in.read(); // blocks until the coordinator closes the connection
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void start(final Runnable worker) {
+		final Thread thread = new Thread(worker);
+		thread.setDaemon(true);
+		thread.start();
+	}
+}
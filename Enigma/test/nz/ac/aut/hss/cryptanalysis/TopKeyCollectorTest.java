@@ -0,0 +1,63 @@
+package nz.ac.aut.hss.cryptanalysis;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TopKeyCollectorTest {
+	@Test
+	public void ranksBestFirst() {
+		final TopKeyCollector collector = new TopKeyCollector(3, 1);
+		collector.offer(0, -5);
+		collector.offer(1, -1);
+		collector.offer(2, -3);
+		collector.offer(3, -1); // same score as key 1, but found later
+		assertFalse(collector.offer(4, -10));
+		final long[] keys = new long[3];
+		final double[] scores = new double[3];
+		assertEquals(3, collector.rank(keys, scores));
+		assertEquals(1, keys[0]);
+		assertEquals(3, keys[1]);
+		assertEquals(2, keys[2]);
+		assertEquals(-3, scores[2], 0);
+	}
+
+	@Test
+	public void concurrentOffers() throws Exception {
+		final int threads = 4, keysPerThread = 100000, capacity = 50;
+		final TopKeyCollector collector = new TopKeyCollector(capacity, threads);
+		final List<Thread> workers = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			final int offset = t;
+			workers.add(new Thread() {
+				@Override
+				public void run() {
+					final Random random = new Random(offset);
+					for (int i = 0; i < keysPerThread; i++) {
+						final long key = (long) i * threads + offset;
+						collector.offer(key, key % 1000 == 0 ? key : -random.nextInt(1000000));
+					}
+				}
+			});
+		}
+		for (Thread worker : workers)
+			worker.start();
+		for (Thread worker : workers)
+			worker.join();
+		final long[] keys = new long[capacity];
+		final double[] scores = new double[capacity];
+		assertEquals(capacity, collector.rank(keys, scores));
+		// the keys divisible by 1000 score highest, the highest key first
+		final long highest = (long) threads * keysPerThread - 1000;
+		for (int i = 0; i < capacity; i++) {
+			assertEquals(highest - i * 1000, keys[i]);
+			assertTrue(i == 0 || scores[i] <= scores[i - 1]);
+		}
+	}
+}
@@ -4,6 +4,19 @@ import org.apache.commons.lang3.StringUtils;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.junit.Assert.*;
 
 public abstract class AbstractEnigmaTest {
@@ -71,6 +84,179 @@ public abstract class AbstractEnigmaTest {
 		}
 	}
 
+	/**
+	 * Makes sure that decrypting with the keystream and the decryption table equals decrypting with the machine,
+	 * for texts longer than a rotation of the first rotor.
+	 */
+	@Test
+	public void keystream() {
+		final String plaintext = "intelligencepointstoattackontheeastwallofthecastleatdawnandholdit";
+		final byte[] decryption = enigma.getDecryptionTable();
+		final byte[] offsets = new byte[plaintext.length()];
+		final int[] positions = new int[3];
+		for (int num = 0; num < ALPHABET_SIZE * ALPHABET_SIZE * ALPHABET_SIZE; num++) {
+			positions[0] = num / (ALPHABET_SIZE * ALPHABET_SIZE);
+			positions[1] = num / ALPHABET_SIZE % ALPHABET_SIZE;
+			positions[2] = num % ALPHABET_SIZE;
+			final String key = String.valueOf(Enigma.ALPHABET[positions[0]])
+					+ Enigma.ALPHABET[positions[1]]
+					+ Enigma.ALPHABET[positions[2]];
+			final String ciphertext = enigma.encrypt(plaintext, key);
+			enigma.keystream(positions, offsets.length, offsets);
+			for (int i = 0; i < offsets.length; i++) {
+				final int symbol = decryption[offsets[i] * ALPHABET_SIZE + ciphertext.charAt(i) - 'A'];
+				assertEquals(plaintext.charAt(i), Character.toLowerCase(Enigma.ALPHABET[symbol]));
+			}
+		}
+	}
+
+	/**
+	 * Makes sure that a text given in pieces is en-/decrypted like the whole text and that everything but letters is
+	 * kept without moving the rotors.
+	 */
+	@Test
+	public void session() {
+		final String plaintext = "intelligencepointstoattackontheeastwallofthecastleatdawnandholdit";
+		final String expected = enigma.encrypt(plaintext, "MAS");
+		final EnigmaSession encryption = enigma.encryptSession("MAS");
+		final StringBuilder ciphertext = new StringBuilder();
+		for (int i = 0; i < plaintext.length(); i += 7)
+			ciphertext.append(encryption.update(plaintext.substring(i, Math.min(i + 7, plaintext.length()))));
+		assertEquals(expected, ciphertext.toString());
+		assertEquals(plaintext.length(), encryption.getLetters());
+		final String punctuated = "Intelligence points to: attack on the east wall\nof the castle at dawn!";
+		final String encrypted = enigma.encryptSession("MAS").update(punctuated);
+		assertEquals(expected.substring(0, 12), encrypted.substring(0, 12));
+		assertEquals(": ", encrypted.substring(22, 24));
+		assertEquals(punctuated.toLowerCase(), enigma.decryptSession("MAS").update(encrypted));
+	}
+
+	@Test
+	public void streams() throws Exception {
+		final StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 20000; i++)
+			text.append("line ").append(i).append(": attack at dawn\n");
+		final String plaintext = text.toString();
+		final StringWriter ciphertext = new StringWriter();
+		assertEquals(plaintext.length(),
+				enigma.encryptSession("HSS").transfer(new StringReader(plaintext), ciphertext));
+		final ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+		enigma.decryptSession("HSS").transfer(
+				Channels.newChannel(new ByteArrayInputStream(ciphertext.toString().getBytes("US-ASCII"))),
+				Channels.newChannel(decrypted));
+		assertEquals(plaintext, decrypted.toString("US-ASCII"));
+	}
+
+	@Test
+	public void seek() {
+		final String plaintext = "intelligencepointstoattackontheeastwallofthecastleatdawnandholdit";
+		final String ciphertext = enigma.encrypt(plaintext, "MZZ");
+		for (int letters : new int[]{0, 1, 13, 27, 40}) {
+			final String rest = enigma.encrypt(plaintext.substring(letters), enigma.seek("MZZ", letters));
+			assertEquals(ciphertext.substring(letters), rest);
+			final EnigmaSession session = enigma.encryptSession("MZZ");
+			session.seek(letters);
+			assertEquals(rest, session.update(plaintext.substring(letters)));
+		}
+		// the odometer wraps around after all rotor states
+		assertEquals("MZZ", enigma.seek("MZZ", ALPHABET_SIZE * ALPHABET_SIZE * ALPHABET_SIZE * 3L));
+	}
+
+	@Test
+	public void parallelEqualsSession() throws Exception {
+		final StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 100000; i++)
+			text.append("Line ").append(i).append(": attack at dawn!\n");
+		final String plaintext = text.toString();
+		final String expected = enigma.encryptSession("HSS").update(plaintext);
+		final ParallelCipher cipher = new ParallelCipher(enigma, 3);
+		assertEquals(expected, cipher.encrypt(plaintext, "HSS"));
+		assertEquals(plaintext.toLowerCase(), cipher.decrypt(expected, "HSS"));
+		final ByteArrayOutputStream ciphertext = new ByteArrayOutputStream();
+		cipher.transfer(Channels.newChannel(new ByteArrayInputStream(plaintext.getBytes("US-ASCII"))),
+				Channels.newChannel(ciphertext), "HSS", true);
+		assertEquals(expected, ciphertext.toString("US-ASCII"));
+	}
+
+	/**
+	 * Makes sure that one machine can en-/decrypt on several threads at the same time.
+	 */
+	@Test
+	public void concurrentCalls() throws Exception {
+		final String plaintext = "intelligencepointstoattackontheeastwallofthecastleatdawnandholdit";
+		final String[] keys = {"MAS", "HSS", "AUT", "ZZZ"};
+		final String[] expected = new String[keys.length];
+		for (int k = 0; k < keys.length; k++)
+			expected[k] = createMachine(3).encrypt(plaintext, keys[k]);
+		final ExecutorService executor = Executors.newFixedThreadPool(keys.length);
+		try {
+			final List<Future<Boolean>> results = new ArrayList<>();
+			for (int k = 0; k < keys.length; k++) {
+				final int index = k;
+				results.add(executor.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() {
+						for (int i = 0; i < 2000; i++) {
+							final String ciphertext = enigma.encrypt(plaintext, keys[index]);
+							if (!ciphertext.equals(expected[index])
+									|| !enigma.decrypt(ciphertext, keys[index]).equals(plaintext))
+								return false;
+						}
+						return true;
+					}
+				}));
+			}
+			for (Future<Boolean> result : results)
+				assertTrue(result.get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void rotorOrder() {
+		final String plaintext = "intelligencepointstoattackontheeastwallofthecastleatdawn";
+		assertEquals(enigma.encrypt(plaintext, "MAS"),
+				enigma.withRotorOrder(new int[]{0, 1, 2}).encrypt(plaintext, "MAS"));
+		final Enigma reordered = enigma.withRotorOrder(new int[]{7, 3, 5});
+		assertEquals("[7, 3, 5]", Arrays.toString(reordered.copy().getRotorOrder()));
+		final String ciphertext = reordered.encrypt(plaintext, "MAS");
+		assertFalse(ciphertext.equals(enigma.encrypt(plaintext, "MAS")));
+		assertEquals(plaintext, reordered.decrypt(ciphertext, "MAS"));
+		try {
+			enigma.withRotorOrder(new int[]{1, 1, 2});
+			fail("Rotor used twice");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Compares the keystream of every amount of rotors with the sum of the rotor offsets while moving the rotors
+	 * one by one.
+	 */
+	@Test
+	public void keystreamOfAllRotorCounts() {
+		final int length = 30000;
+		final byte[] offsets = new byte[length];
+		for (int rotors = 1; rotors <= Enigma.ALPHABET_SCRAMBLED.length; rotors++) {
+			final Enigma machine = createMachine(3).withRotorOrder(Arrays.copyOf(new int[]{7, 2, 5, 0, 3, 6, 1, 4},
+					rotors));
+			final int[] positions = new int[rotors];
+			for (int r = 0; r < rotors; r++)
+				positions[r] = ALPHABET_SIZE - 1 - r % 3; // every rotor moves on soon
+			machine.keystream(positions, length, offsets);
+			for (int i = 0; i < length; i++) {
+				int offset = 0;
+				for (int r = 0; r < rotors; r++)
+					offset += machine.getRotorOffset(r, positions[r]);
+				assertEquals(offset % ALPHABET_SIZE, offsets[i]);
+				for (int r = 0; r < rotors && ++positions[r] == ALPHABET_SIZE; r++)
+					positions[r] = 0;
+			}
+		}
+	}
+
 	/**
 	 * Tests all different keys.
 	 * @param plaintext the plaintext to test
@@ -0,0 +1,50 @@
+package nz.ac.aut.hss.benchmark;
+
+import nz.ac.aut.hss.cryptanalysis.EnigmaAnalyzer;
+import nz.ac.aut.hss.encrypt.Enigma;
+import nz.ac.aut.hss.encrypt.ReflectorEnigma;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of a whole exhaustive attack on a single thread, which grows with 26 to the power of the rotors.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AnalyzerBenchmark {
+	@Param({"1", "2", "3", "4"})
+	public int rotors;
+	@Param({"56", "256"})
+	public int length;
+
+	private EnigmaAnalyzer analyzer;
+	private String ciphertext;
+
+	@Setup
+	public void setUp() throws IOException {
+		final Enigma enigma = new ReflectorEnigma(rotors);
+		analyzer = new EnigmaAnalyzer(enigma);
+		ciphertext = enigma.encrypt(Texts.english(length), Texts.key(rotors));
+	}
+
+	@Benchmark
+	public String findKey() {
+		return analyzer.findKey(ciphertext);
+	}
+}
@@ -0,0 +1,56 @@
+package nz.ac.aut.hss.benchmark;
+
+import nz.ac.aut.hss.encrypt.Enigma;
+import nz.ac.aut.hss.encrypt.ReflectorEnigma;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of en- and decrypting texts with both machines.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CipherBenchmark {
+	@Param({"Enigma", "ReflectorEnigma"})
+	public String machine;
+	@Param({"1", "2", "3", "4"})
+	public int rotors;
+	@Param({"56", "2048"})
+	public int length;
+
+	private Enigma enigma;
+	private String key, plaintext, ciphertext;
+
+	@Setup
+	public void setUp() {
+		enigma = "ReflectorEnigma".equals(machine) ? new ReflectorEnigma(rotors) : new Enigma(rotors);
+		key = Texts.key(rotors);
+		plaintext = Texts.english(length);
+		ciphertext = enigma.encrypt(plaintext, key);
+	}
+
+	@Benchmark
+	public String encrypt() {
+		return enigma.encrypt(plaintext, key);
+	}
+
+	@Benchmark
+	public String decrypt() {
+		return enigma.decrypt(ciphertext, key);
+	}
+}
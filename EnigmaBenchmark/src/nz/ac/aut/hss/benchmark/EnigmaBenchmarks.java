@@ -0,0 +1,24 @@
+package nz.ac.aut.hss.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks of this module with the allocation rate of each benchmark, reported as
+ * <code>gc.alloc.rate.norm</code> in bytes per operation.
+ * <p>
+ * Accepts the usual JMH options, e.g. a regular expression of the benchmarks to run:
+ * <code>java nz.ac.aut.hss.benchmark.EnigmaBenchmarks TextScoreBenchmark -p length=56</code>
+ */
+public class EnigmaBenchmarks {
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		new Runner(new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.build()).run();
+	}
+}
@@ -0,0 +1,76 @@
+package nz.ac.aut.hss.benchmark;
+
+import nz.ac.aut.hss.cryptanalysis.ScoringTables;
+import nz.ac.aut.hss.cryptanalysis.TextScore;
+import nz.ac.aut.hss.encrypt.Enigma;
+import nz.ac.aut.hss.encrypt.ReflectorEnigma;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time per key of the decrypt-and-score loop of the analyzers, once with {@link Enigma#decrypt(byte[], int, int[],
+ * byte[])} and once with the keystream and the decryption table as the analyzers use them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class KernelBenchmark {
+	@Param({"3", "4", "5"})
+	public int rotors;
+	@Param({"56", "2048"})
+	public int length;
+
+	private Enigma enigma;
+	private TextScore textScore;
+	private byte[] ciphertext, decryption, plaintext, offsets;
+	private int[] positions;
+	private Random random;
+
+	@Setup
+	public void setUp() throws IOException {
+		enigma = new ReflectorEnigma(rotors);
+		textScore = ScoringTables.quadgrams();
+		ciphertext = Texts.symbolsOf(enigma.encrypt(Texts.english(length), Texts.key(rotors)));
+		decryption = enigma.getDecryptionTable();
+		plaintext = new byte[length];
+		offsets = new byte[length];
+		positions = new int[rotors];
+		random = new Random(0);
+	}
+
+	private int[] randomPositions() {
+		for (int i = 0; i < positions.length; i++)
+			positions[i] = random.nextInt(Enigma.ALPHABET.length);
+		return positions;
+	}
+
+	@Benchmark
+	public double decrypt() {
+		enigma.decrypt(ciphertext, length, randomPositions(), plaintext);
+		return textScore.valueOf(plaintext, 0, length);
+	}
+
+	@Benchmark
+	public double keystream() {
+		enigma.keystream(randomPositions(), length, offsets);
+		for (int i = 0; i < length; i++)
+			plaintext[i] = decryption[offsets[i] * Enigma.ALPHABET.length + ciphertext[i]];
+		return textScore.valueOf(plaintext, 0, length);
+	}
+}
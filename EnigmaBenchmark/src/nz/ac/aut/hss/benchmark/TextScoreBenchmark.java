@@ -0,0 +1,78 @@
+package nz.ac.aut.hss.benchmark;
+
+import nz.ac.aut.hss.cryptanalysis.BigramCalculator;
+import nz.ac.aut.hss.cryptanalysis.BigramIndexCalculator;
+import nz.ac.aut.hss.cryptanalysis.QgramCalculator;
+import nz.ac.aut.hss.cryptanalysis.QgramIndexCalculator;
+import nz.ac.aut.hss.cryptanalysis.QuantizedQgramCalculator;
+import nz.ac.aut.hss.cryptanalysis.TextScore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of rating texts with each text score, given as string and as symbols like the analyzers do.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TextScoreBenchmark {
+	@Param({"BigramCalculator", "BigramIndexCalculator", "QgramCalculator", "QgramIndexCalculator",
+			"QuantizedQgramCalculator"})
+	public String score;
+	@Param({"56", "2048"})
+	public int length;
+
+	private TextScore textScore;
+	private String text;
+	private byte[] symbols;
+
+	@Setup
+	public void setUp() throws IOException {
+		switch (score) {
+			case "BigramCalculator":
+				textScore = new BigramCalculator();
+				break;
+			case "BigramIndexCalculator":
+				textScore = new BigramIndexCalculator();
+				break;
+			case "QgramCalculator":
+				textScore = new QgramCalculator();
+				break;
+			case "QgramIndexCalculator":
+				textScore = new QgramIndexCalculator();
+				break;
+			case "QuantizedQgramCalculator":
+				textScore = new QuantizedQgramCalculator();
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown text score " + score);
+		}
+		text = Texts.english(length).toUpperCase();
+		symbols = Texts.symbolsOf(text);
+	}
+
+	@Benchmark
+	public double valueOfText() {
+		return textScore.valueOf(text);
+	}
+
+	@Benchmark
+	public double valueOfSymbols() {
+		return textScore.valueOf(symbols, 0, symbols.length);
+	}
+}
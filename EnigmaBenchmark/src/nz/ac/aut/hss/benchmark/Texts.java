@@ -0,0 +1,45 @@
+package nz.ac.aut.hss.benchmark;
+
+/**
+ * English texts of any length for the benchmarks.
+ */
+final class Texts {
+	private static final String SENTENCE = "intelligencepointstoattackontheeastwallofthecastleatdawn";
+
+	private Texts() {
+	}
+
+	/**
+	 * @param length the length of the text
+	 * @return a lower-case english text of the given length, repeating a sentence if necessary
+	 */
+	static String english(final int length) {
+		final StringBuilder text = new StringBuilder(length + SENTENCE.length());
+		while (text.length() < length)
+			text.append(SENTENCE);
+		text.setLength(length);
+		return text.toString();
+	}
+
+	/**
+	 * @param text the upper-case text
+	 * @return the characters of the text as indices in the alphabet
+	 */
+	static byte[] symbolsOf(final String text) {
+		final byte[] symbols = new byte[text.length()];
+		for (int i = 0; i < symbols.length; i++)
+			symbols[i] = (byte) (text.charAt(i) - 'A');
+		return symbols;
+	}
+
+	/**
+	 * @param rotors the amount of rotors
+	 * @return a key that is the same for every run, so that runs can be compared
+	 */
+	static String key(final int rotors) {
+		final char[] key = new char[rotors];
+		for (int i = 0; i < rotors; i++)
+			key[i] = (char) ('A' + (7 * i + 12) % 26);
+		return new String(key);
+	}
+}